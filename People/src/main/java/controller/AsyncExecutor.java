@@ -0,0 +1,169 @@
+package controller;
+
+import java.awt.Component;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs the work of the controller (access to the storage system, password
+ * checks, PNG encoding) outside the event dispatch thread and returns its
+ * result as a CompletableFuture. Results must be handled in the event
+ * dispatch thread with the EDT executor, e.g. whenCompleteAsync(action,
+ * AsyncExecutor.EDT).
+ *
+ * There is a single worker thread, so the operations reach the DAO one after
+ * the other as they did before (DAOArrayList and DAOHashMap are not thread
+ * safe). Up to QUEUE_SIZE operations can wait; beyond that they fail with a
+ * RejectedExecutionException instead of piling up. Cancelling a future
+ * interrupts its task.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class AsyncExecutor {
+
+    public static final Executor EDT = SwingUtilities::invokeLater;
+    private static final int QUEUE_SIZE = 32;
+    private static final int PROGRESS_REFRESH_MILLIS = 200;
+
+    /**
+     * Work that returns a result and may throw any exception.
+     * @param <T>
+     */
+    public interface Task<T> {
+
+        T call() throws Exception;
+    }
+
+    /**
+     * Work that reports its progress.
+     * @param <T>
+     */
+    public interface ProgressTask<T> {
+
+        T call(Progress progress) throws Exception;
+    }
+
+    /**
+     * Progress of a task, written by the task and read by the progress
+     * dialog.
+     */
+    public static class Progress {
+
+        private final AtomicInteger done = new AtomicInteger();
+        private volatile int total;
+
+        public void setTotal(int total) {
+            this.total = total;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getDone() {
+            return done.get();
+        }
+
+        /**
+         * Counts one unit of work.
+         * @throws CancellationException if the task has been cancelled
+         */
+        public void step() {
+            checkCancelled();
+            done.incrementAndGet();
+        }
+    }
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+                Thread t = new Thread(r, "Controller-worker");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Queues the task.
+     * @param <T>
+     * @param task
+     * @return future completed with the result or the exception of the task
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                if (result.isDone()) {
+                    //Cancelled while it was queued
+                    return;
+                }
+                try {
+                    result.complete(task.call());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        result.whenComplete((r, ex) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queues the task and shows its progress in a ProgressMonitor that pops
+     * up if the task takes more than half a second. Its Cancel button
+     * cancels the task. Must be called in the event dispatch thread.
+     * @param <T>
+     * @param parent
+     * @param message
+     * @param task
+     * @return future completed with the result or the exception of the task
+     */
+    public <T> CompletableFuture<T> submitWithProgress(Component parent, String message, ProgressTask<T> task) {
+        Progress progress = new Progress();
+        CompletableFuture<T> result = submit(() -> task.call(progress));
+        ProgressMonitor monitor = new ProgressMonitor(parent, message, null, 0, 1);
+        Timer timer = new Timer(PROGRESS_REFRESH_MILLIS, e -> {
+            if (monitor.isCanceled()) {
+                result.cancel(true);
+                return;
+            }
+            int total = Math.max(1, progress.getTotal());
+            monitor.setMaximum(total);
+            //The monitor closes itself when the maximum is reached
+            monitor.setProgress(Math.min(progress.getDone(), total - 1));
+            monitor.setNote(progress.getDone() + " / " + progress.getTotal());
+        });
+        timer.start();
+        result.whenCompleteAsync((r, ex) -> {
+            timer.stop();
+            monitor.close();
+        }, EDT);
+        return result;
+    }
+
+    /**
+     * Called by long tasks between two units of work.
+     * @throws CancellationException if the task has been cancelled
+     */
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -2,29 +2,36 @@ package controller;
 
 import model.entity.Person;
 import model.entity.PersonException;
+import model.dao.CachingDAO;
+import model.dao.ConnectionPool;
 import model.dao.DAOArrayList;
+import model.dao.DAOBinaryFile;
+import model.dao.DAOConcurrentHashMap;
 import model.dao.DAOFile;
 import model.dao.DAOFileSerializable;
-import model.dao.DAOHashMap;
 import model.dao.DAOJPA;
 import model.dao.DAOSQL;
 import model.dao.IDAO;
+import model.dao.InstrumentedDAO;
+import model.dao.UncheckedDAOException;
+import model.dao.WriteOutcome;
 import start.Routes;
 import view.DataStorageSelection;
 import view.Delete;
 import view.Insert;
 import view.Menu;
 import view.Read;
+import view.PersonTableModel;
 import view.ReadAll;
 import view.Update;
 
+import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -33,16 +40,23 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 import javax.persistence.*;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.SwingUtilities;
 import model.entity.User;
 import org.jdatepicker.DateModel;
 import utils.DataValidation;
 import utils.FileManagement;
 import utils.PasswordHasher;
+import utils.ThumbnailCache;
 
 import view.Count;
 import view.Login;
@@ -55,7 +69,7 @@ import view.Login;
  * @author Francesc Perez
  * @version 1.1.0
  */
-public class ControllerImplementation implements IController, ActionListener {
+public class ControllerImplementation implements IAsyncController, ActionListener {
 
     //Instance variables used so that both the visual and model parts can be 
     //accessed from the Controller.
@@ -70,6 +84,16 @@ public class ControllerImplementation implements IController, ActionListener {
     private ReadAll readAll;
     private Count count;
     private User activeUser;
+    private final AsyncExecutor worker = new AsyncExecutor();
+    //Pixels of the thumbnails kept in memory, about 200 photos of the dialogs
+    private static final long THUMBNAIL_PIXELS = 4_000_000;
+    //Seconds between two prints of the metrics of the storage system
+    private static final long METRICS_DUMP_SECONDS = 60;
+    private ThumbnailCache thumbnails;
+    //Person shown in the update dialog and the thumbnail of its photo. If the
+    //thumbnail is not replaced, the person keeps its original photo.
+    private Person readForUpdate;
+    private ImageIcon thumbnailForUpdate;
 
     /**
      * This constructor allows the controller to know which data storage option
@@ -140,50 +164,92 @@ public class ControllerImplementation implements IController, ActionListener {
             case DataValidation.ARRAYLIST ->
                 dao = new DAOArrayList();
             case DataValidation.HASHMAP ->
-                dao = new DAOHashMap();
+                dao = new DAOConcurrentHashMap();
             case DataValidation.FILE ->
                 setupFileStorage();
             case DataValidation.FILE_SERIALIZATION ->
                 setupFileSerialization();
+            case DataValidation.BINARY_FILE ->
+                setupBinaryFile();
             case DataValidation.SQL_DATABASE ->
                 setupSQLDatabase();
             case DataValidation.JPA_DATABASE ->
                 setupJPADatabase();
         }
+        dao = new InstrumentedDAO(dao, METRICS_DUMP_SECONDS);
+        if (dSS.isCacheSelected()) {
+            dao = new CachingDAO(dao);
+        }
+        thumbnails = new ThumbnailCache(THUMBNAIL_PIXELS, thumbnailsFolder(daoSelected));
         setupLoginSQL();
 
     }
 
+    /**
+     * @return folder of the thumbnails, next to the data of the storage
+     * system, or null if the storage system keeps the data in memory
+     */
+    private String thumbnailsFolder(String daoSelected) {
+        Routes route = switch (daoSelected) {
+            case DataValidation.FILE ->
+                Routes.FILE;
+            case DataValidation.FILE_SERIALIZATION ->
+                Routes.FILES;
+            case DataValidation.BINARY_FILE ->
+                Routes.FILEB;
+            case DataValidation.SQL_DATABASE ->
+                Routes.DB;
+            case DataValidation.JPA_DATABASE ->
+                Routes.DBO;
+            default ->
+                null;
+        };
+        return route != null ? route.getFolderPath() + File.separator + "Thumbnails" : null;
+    }
+
     private void setupFileStorage() {
         File folderPath = new File(Routes.FILE.getFolderPath());
         File folderPhotos = new File(Routes.FILE.getFolderPhotos());
         File dataFile = new File(Routes.FILE.getDataFile());
         folderPath.mkdir();
         folderPhotos.mkdir();
-        if (!dataFile.exists()) {
-            try {
+        try {
+            if (!dataFile.exists()) {
                 dataFile.createNewFile();
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(dSS, "File structure not created. Closing application.", "File - People v1.1.0", JOptionPane.ERROR_MESSAGE);
-                System.exit(0);
             }
+            dao = new DAOFile(DAOFile.DEFAULT_COMPACTION_RATIO);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(dSS, "File structure not created. Closing application.", "File - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
         }
-        dao = new DAOFile();
     }
 
     private void setupFileSerialization() {
         File folderPath = new File(Routes.FILES.getFolderPath());
         File dataFile = new File(Routes.FILES.getDataFile());
         folderPath.mkdir();
-        if (!dataFile.exists()) {
-            try {
+        try {
+            if (!dataFile.exists()) {
                 dataFile.createNewFile();
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(dSS, "File structure not created. Closing application.", "FileSer - People v1.1.0", JOptionPane.ERROR_MESSAGE);
-                System.exit(0);
             }
+            dao = new DAOFileSerializable();
+        } catch (IOException | ClassNotFoundException ex) {
+            JOptionPane.showMessageDialog(dSS, "File structure not created. Closing application.", "FileSer - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
+        }
+    }
+
+    private void setupBinaryFile() {
+        File folderPath = new File(Routes.FILEB.getFolderPath());
+        File folderPhotos = new File(Routes.FILEB.getFolderPhotos());
+        folderPath.mkdir();
+        folderPhotos.mkdir();
+        try {
+            dao = new DAOBinaryFile();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(dSS, "Binary file not available: " + ex.getMessage() + " Closing application.", "FileBin - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
         }
-        dao = new DAOFileSerializable();
     }
 
     private void setupSQLDatabase() {
@@ -200,12 +266,8 @@ public class ControllerImplementation implements IController, ActionListener {
                 System.exit(0);
             }
         }
-        dao = new DAOFile();
-        try {
-            Connection conn = DriverManager.getConnection(Routes.DB.getDbServerAddress() + Routes.DB.getDbServerComOpt(),
-                    Routes.DB.getDbServerUser(), Routes.DB.getDbServerPassword());
-            if (conn != null) {
-                Statement stmt = conn.createStatement();
+        try (Connection conn = ConnectionPool.get(Routes.DB).getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
                 stmt.executeUpdate("create database if not exists " + Routes.DB.getDbServerDB() + ";");
                 stmt.executeUpdate("create table if not exists " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + "("
                         + "nif varchar(9) primary key not null, "
@@ -215,14 +277,17 @@ public class ControllerImplementation implements IController, ActionListener {
                         + "email varchar(255), "
                         + "dateOfBirth DATE, "
                         + "photo varchar(200) );");
-                stmt.close();
-                conn.close();
             }
         } catch (SQLException ex) {
             JOptionPane.showMessageDialog(dSS, "SQL-DDBB structure not created. Closing application.", "SQL_DDBB - People v1.1.0", JOptionPane.ERROR_MESSAGE);
             System.exit(0);
         }
-        dao = new DAOSQL();
+        try {
+            dao = new DAOSQL();
+        } catch (SQLException | IOException ex) {
+            JOptionPane.showMessageDialog(dSS, "SQL-DDBB photos not available. Closing application.", "SQL_DDBB - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
+        }
     }
 
     private void setupJPADatabase() {
@@ -257,26 +322,19 @@ public class ControllerImplementation implements IController, ActionListener {
     }
 
     private void insertUserToDatabase(User user){
-        try {
-            Connection conn = DriverManager.getConnection(Routes.LOGIN.getDbServerAddress() + Routes.LOGIN.getDbServerComOpt(),
-                    Routes.LOGIN.getDbServerUser(), Routes.LOGIN.getDbServerPassword());
-            if (conn != null){
-                PasswordHasher phash = new PasswordHasher();
-                String hashedPassword = phash.hashPassword(user.getPassword());
-                try{
-                    String sql = "INSERT INTO " + Routes.LOGIN.getDbServerDB() + "." + Routes.LOGIN.getDbServerTABLE()
-                        + " (username, password, role)"
-                        + " VALUES (?, ?, ?)";
-                    PreparedStatement pstmt = conn.prepareStatement(sql);
-                    pstmt.setString(1, user.getUserName());
-                    pstmt.setString(2, hashedPassword);
-                    pstmt.setString(3, user.getRole());
-                    pstmt.executeUpdate();
-                    pstmt.close();
-                    conn.close();
-                } catch (SQLException e){
-                    System.out.println("User already exists");
-                }
+        try (Connection conn = ConnectionPool.get(Routes.LOGIN).getConnection()) {
+            PasswordHasher phash = new PasswordHasher();
+            String hashedPassword = phash.hashPassword(user.getPassword());
+            String sql = "INSERT INTO " + Routes.LOGIN.getDbServerDB() + "." + Routes.LOGIN.getDbServerTABLE()
+                + " (username, password, role)"
+                + " VALUES (?, ?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, user.getUserName());
+                pstmt.setString(2, hashedPassword);
+                pstmt.setString(3, user.getRole());
+                pstmt.executeUpdate();
+            } catch (SQLException e){
+                System.out.println("User already exists");
             }
         } catch (SQLException e){
             e.printStackTrace();
@@ -286,19 +344,14 @@ public class ControllerImplementation implements IController, ActionListener {
     }
     
     private void setupLoginSQL() {
-        try {
-            Connection conn = DriverManager.getConnection(Routes.LOGIN.getDbServerAddress() + Routes.LOGIN.getDbServerComOpt(),
-                    Routes.LOGIN.getDbServerUser(), Routes.LOGIN.getDbServerPassword());
-            if (conn != null) {
-                Statement stmt = conn.createStatement();
+        try (Connection conn = ConnectionPool.get(Routes.LOGIN).getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
                 stmt.executeUpdate("create database if not exists " + Routes.LOGIN.getDbServerDB() + ";");
                 stmt.executeUpdate("create table if not exists " + Routes.LOGIN.getDbServerDB() + "." + Routes.LOGIN.getDbServerTABLE() + "("
                         + "username varchar(50) primary key not null, "
                         + "password varchar(400) not null,"
                         + "role varchar(45) not null "
                         + ");");
-                stmt.close();
-                conn.close();
             }
         } catch (SQLException ex) {
             JOptionPane.showMessageDialog(dSS, "SQL-DDBB structure not created for login. Closing application.", "SQL_DDBB - People v1.1.0", JOptionPane.ERROR_MESSAGE);
@@ -317,42 +370,56 @@ public class ControllerImplementation implements IController, ActionListener {
     }
 
     private void handleLoginValidation() {
-        PasswordHasher pswHasher = new PasswordHasher();
         String userName = login.getUserName().getText();
         char[] cPassw = login.getPassword().getPassword();
-        try {
-            Connection conn = DriverManager.getConnection(Routes.LOGIN.getDbServerAddress() + Routes.LOGIN.getDbServerComOpt(),
-                    Routes.LOGIN.getDbServerUser(), Routes.LOGIN.getDbServerPassword());
-            if (conn != null) {
-                String sql = "SELECT * FROM " + Routes.LOGIN.getDbServerDB() + "." + Routes.LOGIN.getDbServerTABLE() + " WHERE username = ?";
-                PreparedStatement pstmt = conn.prepareStatement(sql);
-                pstmt.setString(1, userName);
-                String passwRs = "";
-                String userRole = "";
-                    ResultSet rs = pstmt.executeQuery();
-                    if (rs.next()) {
-                        passwRs = rs.getString("password");
-                        userRole = rs.getString("role");
-                    }
-                    if (passwRs.equals("")){
-                        JOptionPane.showMessageDialog(null, "Incorrect username or password", "Login - People v1.1.0", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-                pstmt.close();
-                conn.close();
-                if (pswHasher.checkPassword(cPassw, passwRs)) {
-                    login.setVisible(false);
-                    activeUser = new User(userName, cPassw, userRole);
-                    setupMenu();
-                } else {
-                    JOptionPane.showMessageDialog(null, "Incorrect user or password.", "Login - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+        Login dialog = login;
+        //The password check (bcrypt) is slow on purpose, it runs in the worker
+        dialog.getLogin().setEnabled(false);
+        worker.submit(() -> validateUser(userName, cPassw)).whenCompleteAsync((userRole, ex) -> {
+            dialog.getLogin().setEnabled(true);
+            if (ex != null) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(null, "SQL-DDBB structure not created for login. Closing application.", "SQL_DDBB - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+                System.exit(0);
+            }
+            if (userRole != null) {
+                dialog.setVisible(false);
+                activeUser = new User(userName, cPassw, userRole);
+                setupMenu();
+            } else {
+                JOptionPane.showMessageDialog(null, "Incorrect user or password.", "Login - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+            }
+        }, AsyncExecutor.EDT);
+    }
+
+    /**
+     * Checks the user and password against the login database.
+     *
+     * @param userName
+     * @param cPassw
+     * @return the role of the user, or null if the user or the password are
+     * wrong
+     * @throws SQLException
+     */
+    private String validateUser(String userName, char[] cPassw) throws SQLException {
+        String passwRs = "";
+        String userRole = "";
+        String sql = "SELECT * FROM " + Routes.LOGIN.getDbServerDB() + "." + Routes.LOGIN.getDbServerTABLE() + " WHERE username = ?";
+        //The connection goes back to the pool before checking the password
+        try (Connection conn = ConnectionPool.get(Routes.LOGIN).getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    passwRs = rs.getString("password");
+                    userRole = rs.getString("role");
                 }
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(null, "SQL-DDBB structure not created for login. Closing application.", "SQL_DDBB - People v1.1.0", JOptionPane.ERROR_MESSAGE);
-            System.exit(0);
         }
+        if (passwRs.equals("") || !new PasswordHasher().checkPassword(cPassw, passwRs)) {
+            return null;
+        }
+        return userRole;
     }
 
     private void handleInsertAction() {
@@ -362,16 +429,22 @@ public class ControllerImplementation implements IController, ActionListener {
     }
 
     private void handleInsertPerson() {
-        Person p = new Person(insert.getNam().getText(), insert.getNif().getText(), insert.getPostalCode().getText(), insert.getPhoneNumber().getText(), insert.getEmail().getText());
-        if (insert.getDateOfBirth().getModel().getValue() != null) {
-            p.setDateOfBirth(((GregorianCalendar) insert.getDateOfBirth().getModel().getValue()).getTime());
+        Insert dialog = insert;
+        Person p = new Person(dialog.getNam().getText(), dialog.getNif().getText(), dialog.getPostalCode().getText(), dialog.getPhoneNumber().getText(), dialog.getEmail().getText());
+        if (dialog.getDateOfBirth().getModel().getValue() != null) {
+            p.setDateOfBirth(((GregorianCalendar) dialog.getDateOfBirth().getModel().getValue()).getTime());
         }
-        if (insert.getPhoto().getIcon() != null) {
-            p.setPhoto((ImageIcon) insert.getPhoto().getIcon());
+        if (dialog.getPhoto().getIcon() != null) {
+            p.setPhoto((ImageIcon) dialog.getPhoto().getIcon());
         }
-        insert(p);
-        insert.getReset().doClick();
-
+        insertAsync(p).whenCompleteAsync((r, ex) -> {
+            if (ex == null) {
+                JOptionPane.showMessageDialog(menu, "Successfully inserted.", "Insert - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                showFailure(ex, dialog, dialog.getTitle());
+            }
+            dialog.getReset().doClick();
+        }, AsyncExecutor.EDT);
     }
 
     private void handleReadAction() {
@@ -381,28 +454,34 @@ public class ControllerImplementation implements IController, ActionListener {
     }
 
     private void handleReadPerson() {
-        Person p = new Person(read.getNif().getText());
-        Person pNew = read(p);
-        if (pNew != null) {
-            read.getNam().setText(pNew.getName());
-            read.getEmail().setText(pNew.getEmail());
-            read.getPhoneNumber().setText(pNew.getPhoneNumber());
-            read.getPostalCode().setText(pNew.getPostalCode());
-            if (pNew.getDateOfBirth() != null) {
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTime(pNew.getDateOfBirth());
-                DateModel<Calendar> dateModel = (DateModel<Calendar>) read.getDateOfBirth().getModel();
-                dateModel.setValue(calendar);
-            }
-            //To avoid charging former images
-            if (pNew.getPhoto() != null) {
-                pNew.getPhoto().getImage().flush();
-                read.getPhoto().setIcon(pNew.getPhoto());
+        Read dialog = read;
+        Person p = new Person(dialog.getNif().getText());
+        readAsync(p).whenCompleteAsync((pNew, ex) -> {
+            if (ex != null) {
+                showFailure(ex, dialog, dialog.getTitle());
+            } else if (pNew != null) {
+                dialog.getNam().setText(pNew.getName());
+                dialog.getEmail().setText(pNew.getEmail());
+                dialog.getPhoneNumber().setText(pNew.getPhoneNumber());
+                dialog.getPostalCode().setText(pNew.getPostalCode());
+                if (pNew.getDateOfBirth() != null) {
+                    Calendar calendar = Calendar.getInstance();
+                    calendar.setTime(pNew.getDateOfBirth());
+                    DateModel<Calendar> dateModel = (DateModel<Calendar>) dialog.getDateOfBirth().getModel();
+                    dateModel.setValue(calendar);
+                }
+                if (pNew.hasPhoto()) {
+                    thumbnailAsync(pNew, dialog.getPhoto()).whenCompleteAsync((thumbnail, tex) -> {
+                        if (tex == null) {
+                            dialog.getPhoto().setIcon(thumbnail);
+                        }
+                    }, AsyncExecutor.EDT);
+                }
+            } else {
+                JOptionPane.showMessageDialog(dialog, p.getNif() + " doesn't exist.", dialog.getTitle(), JOptionPane.WARNING_MESSAGE);
+                dialog.getReset().doClick();
             }
-        } else {
-            JOptionPane.showMessageDialog(read, p.getNif() + " doesn't exist.", read.getTitle(), JOptionPane.WARNING_MESSAGE);
-            read.getReset().doClick();
-        }
+        }, AsyncExecutor.EDT);
     }
 
     public void handleDeleteAction() {
@@ -427,9 +506,16 @@ public class ControllerImplementation implements IController, ActionListener {
 
         if (answer == 0) {
             if (delete != null) {
-            Person p = new Person(delete.getNif().getText());
-            delete(p);
-            delete.getReset().doClick();
+            Delete dialog = delete;
+            Person p = new Person(dialog.getNif().getText());
+            deleteAsync(p).whenCompleteAsync((r, ex) -> {
+                if (ex == null) {
+                    JOptionPane.showMessageDialog(menu, "Person deleted successfully!!", "Delete Person - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    showFailure(ex, dialog, "Delete - People v1.1.0");
+                }
+                dialog.getReset().doClick();
+            }, AsyncExecutor.EDT);
             }
         }
     }
@@ -443,91 +529,113 @@ public class ControllerImplementation implements IController, ActionListener {
 
     public void handleReadForUpdate() {
         if (update != null) {
-            Person p = new Person(update.getNif().getText());
-            Person pNew = read(p);
-            if (pNew != null) {
-                update.getNam().setEnabled(true);
-                update.getEmail().setEnabled(true);
-                update.getPhoneNumber().setEnabled(true);
-                update.getPostalCode().setEnabled(true);
-                update.getDateOfBirth().setEnabled(true);
-                update.getPhoto().setEnabled(true);
-                update.getUpdate().setEnabled(true);
-                update.getNam().setText(pNew.getName());
-                update.getEmail().setText(pNew.getEmail());
-                update.getPhoneNumber().setText(pNew.getPhoneNumber());
-                update.getPostalCode().setText(pNew.getPostalCode());
-                if (pNew.getDateOfBirth() != null) {
-                    Calendar calendar = Calendar.getInstance();
-                    calendar.setTime(pNew.getDateOfBirth());
-                    DateModel<Calendar> dateModel = (DateModel<Calendar>) update.getDateOfBirth().getModel();
-                    dateModel.setValue(calendar);
-                }
-                if (pNew.getPhoto() != null) {
-                    pNew.getPhoto().getImage().flush();
-                    update.getPhoto().setIcon(pNew.getPhoto());
-                    update.getUpdate().setEnabled(true);
+            Update dialog = update;
+            Person p = new Person(dialog.getNif().getText());
+            readAsync(p).whenCompleteAsync((pNew, ex) -> {
+                if (ex != null) {
+                    showFailure(ex, dialog, dialog.getTitle());
+                } else if (pNew != null) {
+                    dialog.getNam().setEnabled(true);
+                    dialog.getEmail().setEnabled(true);
+                    dialog.getPhoneNumber().setEnabled(true);
+                    dialog.getPostalCode().setEnabled(true);
+                    dialog.getDateOfBirth().setEnabled(true);
+                    dialog.getPhoto().setEnabled(true);
+                    dialog.getUpdate().setEnabled(true);
+                    dialog.getNam().setText(pNew.getName());
+                    dialog.getEmail().setText(pNew.getEmail());
+                    dialog.getPhoneNumber().setText(pNew.getPhoneNumber());
+                    dialog.getPostalCode().setText(pNew.getPostalCode());
+                    if (pNew.getDateOfBirth() != null) {
+                        Calendar calendar = Calendar.getInstance();
+                        calendar.setTime(pNew.getDateOfBirth());
+                        DateModel<Calendar> dateModel = (DateModel<Calendar>) dialog.getDateOfBirth().getModel();
+                        dateModel.setValue(calendar);
+                    }
+                    if (pNew.hasPhoto()) {
+                        thumbnailAsync(pNew, dialog.getPhoto()).whenCompleteAsync((thumbnail, tex) -> {
+                            if (tex == null) {
+                                readForUpdate = pNew;
+                                thumbnailForUpdate = thumbnail;
+                                dialog.getPhoto().setIcon(thumbnail);
+                            }
+                        }, AsyncExecutor.EDT);
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(dialog, p.getNif() + " doesn't exist.", dialog.getTitle(), JOptionPane.WARNING_MESSAGE);
+                    dialog.getReset().doClick();
                 }
-            } else {
-                JOptionPane.showMessageDialog(update, p.getNif() + " doesn't exist.", update.getTitle(), JOptionPane.WARNING_MESSAGE);
-                update.getReset().doClick();
-            }
+            }, AsyncExecutor.EDT);
         }
     }
 
     public void handleUpdatePerson() {
         if (update != null) {
-            Person p = new Person(update.getNam().getText(), update.getNif().getText(), update.getPostalCode().getText(), update.getPhoneNumber().getText(), update.getEmail().getText() );
-            if ((update.getDateOfBirth().getModel().getValue()) != null) {
-                p.setDateOfBirth(((GregorianCalendar) update.getDateOfBirth().getModel().getValue()).getTime());
+            Update dialog = update;
+            Person p = new Person(dialog.getNam().getText(), dialog.getNif().getText(), dialog.getPostalCode().getText(), dialog.getPhoneNumber().getText(), dialog.getEmail().getText() );
+            if ((dialog.getDateOfBirth().getModel().getValue()) != null) {
+                p.setDateOfBirth(((GregorianCalendar) dialog.getDateOfBirth().getModel().getValue()).getTime());
             }
-            if ((ImageIcon) (update.getPhoto().getIcon()) != null) {
-                p.setPhoto((ImageIcon) update.getPhoto().getIcon());
+            ImageIcon icon = (ImageIcon) dialog.getPhoto().getIcon();
+            if (icon != null && icon == thumbnailForUpdate && readForUpdate.getNif().equals(p.getNif())) {
+                //The photo was not replaced: the original is saved, not its
+                //thumbnail
+                Person original = readForUpdate;
+                p.setPhotoSource(original::getPhoto, original.getPhotoReference());
+            } else if (icon != null) {
+                p.setPhoto(icon);
             }
-            update(p);
-            update.getReset().doClick();
+            readForUpdate = null;
+            thumbnailForUpdate = null;
+            updateAsync(p).whenCompleteAsync((r, ex) -> {
+                if (ex == null) {
+                    JOptionPane.showMessageDialog(dialog, p.getNif() + " updated successfully.", dialog.getTitle(), JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    showFailure(ex, dialog, dialog.getTitle());
+                }
+                dialog.getReset().doClick();
+            }, AsyncExecutor.EDT);
         }
     }
 
     public void handleReadAll() {
-        ArrayList<Person> s = readAll();
-        if (s.isEmpty()) {
-            JOptionPane.showMessageDialog(menu, "There are not people registered yet.", "Read All - People v1.1.0", JOptionPane.WARNING_MESSAGE);
-        } else {
-            readAll = new ReadAll(menu, true);
-            readAll.getExportToCsv().addActionListener(this);
-            DefaultTableModel model = (DefaultTableModel) readAll.getTable().getModel();
-            for (int i = 0; i < s.size(); i++) {
-                model.addRow(new Object[i]);
-                model.setValueAt(s.get(i).getNif(), i, 0);
-                model.setValueAt(s.get(i).getName(), i, 1);
-                model.setValueAt(s.get(i).getPostalCode(), i, 2);
-                model.setValueAt(s.get(i).getPhoneNumber(), i, 3);
-                model.setValueAt(s.get(i).getEmail(), i, 4);
-                if (s.get(i).getDateOfBirth() != null) {
-                    model.setValueAt(s.get(i).getDateOfBirth().toString(), i, 5);
-                } else {
-                    model.setValueAt("", i, 5);
-                }
-                if (s.get(i).getPhoto() != null) {
-                    model.setValueAt("yes", i, 6);
-                } else {
-                    model.setValueAt("no", i, 6);
-                }
+        countAsync().whenCompleteAsync((total, ex) -> {
+            if (ex != null) {
+                showFailure(ex, menu, "Read All - People v1.1.0");
+            } else if (total == 0) {
+                JOptionPane.showMessageDialog(menu, "There are not people registered yet.", "Read All - People v1.1.0", JOptionPane.WARNING_MESSAGE);
+            } else {
+                readAll = new ReadAll(menu, true);
+                readAll.getExportToCsv().addActionListener(this);
+                //The rows are read page by page while the user scrolls. The
+                //table model already reads them outside the event dispatch
+                //thread, it waits for the worker here.
+                readAll.setPeople(new PersonTableModel(total, (afterNif, limit) -> {
+                    try {
+                        return readPageAsync(afterNif, limit).join();
+                    } catch (CompletionException | CancellationException e) {
+                        SwingUtilities.invokeLater(() -> showFailure(e, menu, "Read All - People v1.1.0"));
+                        throw e;
+                    }
+                }));
+                readAll.setVisible(true);
             }
-            readAll.setVisible(true);
-        }
+        }, AsyncExecutor.EDT);
     }
 
 
     public void handleExportToCsv(){
-        try{
-            exportToCsv();
-            JOptionPane.showMessageDialog(menu, "All persons have been exported to "+ FileManagement.DEFAULT_CSV_PATH +" successfully!", "Export to Csv - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
-        }catch (Exception e){
-            JOptionPane.showMessageDialog(menu, "Persons couldn't be exported to "+ FileManagement.DEFAULT_CSV_PATH, "Export to Csv - People v1.1.0", JOptionPane.WARNING_MESSAGE);
-            e.printStackTrace();
-        }
+        ReadAll dialog = readAll;
+        exportToCsvAsync().whenCompleteAsync((exported, ex) -> {
+            if (ex == null) {
+                JOptionPane.showMessageDialog(dialog, exported + " persons have been exported to "+ FileManagement.DEFAULT_CSV_PATH +" successfully!", "Export to Csv - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
+            } else if (ex instanceof CancellationException) {
+                JOptionPane.showMessageDialog(dialog, "Export to "+ FileManagement.DEFAULT_CSV_PATH +" cancelled.", "Export to Csv - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(dialog, "Persons couldn't be exported to "+ FileManagement.DEFAULT_CSV_PATH, "Export to Csv - People v1.1.0", JOptionPane.WARNING_MESSAGE);
+                ex.printStackTrace();
+            }
+        }, AsyncExecutor.EDT);
     }
 
     public void handleDeleteAll() {
@@ -545,20 +653,59 @@ public class ControllerImplementation implements IController, ActionListener {
         );
 
         if (answer == 0) {
-            deleteAll();
+            deleteAllAsync().whenCompleteAsync((r, ex) -> {
+                if (ex == null) {
+                    JOptionPane.showMessageDialog(menu, "All persons have been deleted successfully!", "Delete All - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    showFailure(ex, menu, "Delete All - People v1.1.0");
+                }
+            }, AsyncExecutor.EDT);
         }
     }
 
     public void handleCount() {
-        int cont = 0;
-        cont = count();
-        if (cont == 0) {
-            JOptionPane.showMessageDialog(menu, "There are not people to count.", "Count - People v1.1.0", JOptionPane.WARNING_MESSAGE);
+        countAsync().whenCompleteAsync((cont, ex) -> {
+            if (ex != null) {
+                showFailure(ex, menu, "Count - People v1.1.0");
+            } else if (cont == 0) {
+                JOptionPane.showMessageDialog(menu, "There are not people to count.", "Count - People v1.1.0", JOptionPane.WARNING_MESSAGE);
+            } else {
+                Count count = new Count(menu, true);
+                String c = String.valueOf(cont);
+                count.getPeopleCount().setText(c);
+                count.setVisible(true);
+            }
+        }, AsyncExecutor.EDT);
+    }
+
+    /**
+     * Shows why an asynchronous operation failed. If there is any access
+     * problem with the storage device, the program stops.
+     *
+     * @param failure exception the future was completed with
+     * @param parent
+     * @param title
+     */
+    private void showFailure(Throwable failure, Component parent, String title) {
+        Throwable ex = failure;
+        while ((ex instanceof CompletionException || ex instanceof UncheckedDAOException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        if (ex instanceof CancellationException) {
+            JOptionPane.showMessageDialog(parent, "Operation cancelled.", title, JOptionPane.INFORMATION_MESSAGE);
+        } else if (ex instanceof RejectedExecutionException) {
+            JOptionPane.showMessageDialog(parent, "Too many operations pending. Try again later.", title, JOptionPane.WARNING_MESSAGE);
+        } else if (ex instanceof PersonException) {
+            JOptionPane.showMessageDialog(parent, ex.getMessage(), title, JOptionPane.WARNING_MESSAGE);
+        } else if (ex instanceof FileNotFoundException || ex instanceof IOException
+                || ex instanceof ParseException || ex instanceof ClassNotFoundException
+                || ex instanceof SQLException || ex instanceof PersistenceException) {
+            //Exceptions generated by file, DDBB read/write access. If something  
+            //goes wrong the application closes.
+            JOptionPane.showMessageDialog(parent, ex.getMessage() + ex.getClass() + " Closing application.", title, JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
         } else {
-            Count count = new Count(menu, true);
-            String c = String.valueOf(cont);
-            count.getPeopleCount().setText(c);
-            count.setVisible(true);
+            ex.printStackTrace();
         }
     }
 
@@ -572,8 +719,8 @@ public class ControllerImplementation implements IController, ActionListener {
     @Override
     public void insert(Person p) {
         try {
-            if (dao.read(p) == null) {
-                dao.insert(p);
+            if (dao.insertIfAbsent(p) == WriteOutcome.INSERTED) {
+                thumbnails.invalidate(p.getNif());
                  JOptionPane.showMessageDialog(menu, "Successfully inserted.", "Insert - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
             } else {
                 throw new PersonException(p.getNif() + " is registered and can not "
@@ -605,6 +752,7 @@ public class ControllerImplementation implements IController, ActionListener {
     public void update(Person p) {
         try {
             dao.update(p);
+            thumbnails.invalidate(p.getNif());
             JOptionPane.showMessageDialog(update, p.getNif() + " updated successfully.", update.getTitle(), JOptionPane.INFORMATION_MESSAGE);
         } catch (Exception ex) {
             //Exceptions generated by file read/write access. If something goes 
@@ -628,8 +776,8 @@ public class ControllerImplementation implements IController, ActionListener {
     @Override
     public void delete(Person p) {
         try {
-            if (dao.read(p) != null) {
-                dao.delete(p);
+            if (dao.deleteIfPresent(p) == WriteOutcome.DELETED) {
+                thumbnails.invalidate(p.getNif());
                 JOptionPane.showMessageDialog(menu, "Person deleted successfully!!", "Delete Person - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
             } else {
                 throw new PersonException(p.getNif() + " is not registered and can not "
@@ -701,6 +849,31 @@ public class ControllerImplementation implements IController, ActionListener {
         return people;
     }
 
+    /**
+     * This function returns a page of the people registered, ordered by NIF.
+     * It is called by the ReadAll table while the user scrolls. If there is 
+     * any access problem with the storage device, the program stops.
+     *
+     * @param afterNif NIF of the last person of the previous page, or null
+     * @param limit size of the page
+     * @return ArrayList
+     */
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) {
+        ArrayList<Person> people = new ArrayList<>();
+        try {
+            people = dao.readPage(afterNif, limit);
+        } catch (Exception ex) {
+            if (ex instanceof FileNotFoundException || ex instanceof IOException
+                    || ex instanceof ParseException || ex instanceof ClassNotFoundException
+                    || ex instanceof SQLException || ex instanceof PersistenceException) {
+                JOptionPane.showMessageDialog(menu, ex.getMessage() + " Closing application.", "Read All - People v1.1.0", JOptionPane.ERROR_MESSAGE);
+                System.exit(0);
+            }
+        }
+        return people;
+    }
+
     /**
      * This function returns the people registered. If there is any access
      * problem with the storage device, the program stops.
@@ -728,6 +901,7 @@ public class ControllerImplementation implements IController, ActionListener {
     public void deleteAll() {
         try {
             dao.deleteAll();
+            thumbnails.clear();
             JOptionPane.showMessageDialog(menu, "All persons have been deleted successfully!", "Delete All - People v1.1.0", JOptionPane.INFORMATION_MESSAGE);
         } catch (Exception ex) {
             if (ex instanceof FileNotFoundException || ex instanceof IOException
@@ -755,4 +929,146 @@ public class ControllerImplementation implements IController, ActionListener {
         return cont;
     }
 
+    /**
+     * This function reads the Person object with the requested NIF outside
+     * the event dispatch thread. The future is completed with null if it
+     * doesn't exist.
+     *
+     * @param p Person to read
+     * @return future Person or null
+     */
+    @Override
+    public CompletableFuture<Person> readAsync(Person p) {
+        return worker.submit(() -> dao.read(p));
+    }
+
+    /**
+     * Renders the thumbnail of the photo of the person at the size of the
+     * label outside the event dispatch thread. The photo is only decoded if
+     * the thumbnail is not cached.
+     *
+     * @param p Person with photo
+     * @param label label that will show the thumbnail
+     * @return future thumbnail
+     */
+    private CompletableFuture<ImageIcon> thumbnailAsync(Person p, JLabel label) {
+        int width = label.getWidth();
+        int height = label.getHeight();
+        return worker.submit(() -> thumbnails.render(p.getNif(), p.getPhotoReference(), p::getPhoto, width, height));
+    }
+
+    /**
+     * This function reads a page of the people registered, ordered by NIF,
+     * outside the event dispatch thread.
+     *
+     * @param afterNif NIF of the last person of the previous page, or null
+     * @param limit size of the page
+     * @return future ArrayList
+     */
+    @Override
+    public CompletableFuture<ArrayList<Person>> readPageAsync(String afterNif, int limit) {
+        return worker.submit(() -> dao.readPage(afterNif, limit));
+    }
+
+    /**
+     * This function inserts the Person object outside the event dispatch
+     * thread. The future fails with a PersonException if the NIF is
+     * registered.
+     *
+     * @param p Person to insert
+     * @return future completed when the person is inserted
+     */
+    @Override
+    public CompletableFuture<Void> insertAsync(Person p) {
+        return worker.submit(() -> {
+            if (dao.insertIfAbsent(p) == WriteOutcome.ALREADY_REGISTERED) {
+                throw new PersonException(p.getNif() + " is registered and can not "
+                        + "be INSERTED.");
+            }
+            //A thumbnail left by a person deleted by another session
+            thumbnails.invalidate(p.getNif());
+            return null;
+        });
+    }
+
+    /**
+     * This function updates the Person object outside the event dispatch
+     * thread.
+     *
+     * @param p Person to update
+     * @return future completed when the person is updated
+     */
+    @Override
+    public CompletableFuture<Void> updateAsync(Person p) {
+        return worker.submit(() -> {
+            dao.update(p);
+            thumbnails.invalidate(p.getNif());
+            return null;
+        });
+    }
+
+    /**
+     * This function deletes the Person object outside the event dispatch
+     * thread. The future fails with a PersonException if the NIF is not
+     * registered.
+     *
+     * @param p Person to delete
+     * @return future completed when the person is deleted
+     */
+    @Override
+    public CompletableFuture<Void> deleteAsync(Person p) {
+        return worker.submit(() -> {
+            if (dao.deleteIfPresent(p) == WriteOutcome.NOT_REGISTERED) {
+                throw new PersonException(p.getNif() + " is not registered and can not "
+                        + "be DELETED");
+            }
+            thumbnails.invalidate(p.getNif());
+            return null;
+        });
+    }
+
+    /**
+     * This function deletes all the people registered outside the event
+     * dispatch thread.
+     *
+     * @return future completed when the people are deleted
+     */
+    @Override
+    public CompletableFuture<Void> deleteAllAsync() {
+        return worker.submit(() -> {
+            dao.deleteAll();
+            thumbnails.clear();
+            return null;
+        });
+    }
+
+    /**
+     * This function counts the people registered outside the event dispatch
+     * thread.
+     *
+     * @return future number of people
+     */
+    @Override
+    public CompletableFuture<Integer> countAsync() {
+        return worker.submit(() -> dao.count());
+    }
+
+    /**
+     * This function exports the people registered to the CSV file outside the
+     * event dispatch thread. A progress dialog lets the user cancel it; then
+     * the future is cancelled and the file is left incomplete.
+     *
+     * @return future number of people exported
+     */
+    @Override
+    public CompletableFuture<Integer> exportToCsvAsync() {
+        return worker.submitWithProgress(readAll != null ? readAll : menu, "Exporting to " + FileManagement.DEFAULT_CSV_PATH, progress -> {
+            progress.setTotal(dao.count());
+            try (Stream<Person> people = dao.readStream()) {
+                new FileManagement().exportToCsv(people.peek(p -> progress.step()));
+            }
+            return progress.getDone();
+        });
+    }
+
 }
@@ -0,0 +1,23 @@
+package controller;
+
+import model.entity.Person;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous version of the operations of the controller. The work is done
+ * outside the event dispatch thread and the future is completed with the
+ * result, or with the exception of the storage system or a PersonException.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public interface IAsyncController extends IController {
+    public abstract CompletableFuture<Person> readAsync(Person p);
+    public abstract CompletableFuture<ArrayList<Person>> readPageAsync(String afterNif, int limit);
+    public abstract CompletableFuture<Void> insertAsync(Person p);
+    public abstract CompletableFuture<Void> updateAsync(Person p);
+    public abstract CompletableFuture<Void> deleteAsync(Person p);
+    public abstract CompletableFuture<Void> deleteAllAsync();
+    public abstract CompletableFuture<Integer> countAsync();
+    public abstract CompletableFuture<Integer> exportToCsvAsync();
+}
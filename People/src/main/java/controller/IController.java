@@ -12,6 +12,7 @@ import java.util.ArrayList;
 public interface IController {
     public abstract Person read(Person p);
     public abstract ArrayList<Person> readAll();
+    public abstract ArrayList<Person> readPage(String afterNif, int limit);
     public abstract void insert(Person p) throws Exception;
     public abstract void update(Person p);
     public abstract void delete(Person p);
@@ -0,0 +1,80 @@
+package model.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.entity.Person;
+import start.Routes;
+
+/**
+ * Copies the people stored in "dataFile.txt" (File storage) or "dataFile.ser"
+ * (File (Serialization) storage) into the binary file used by DAOBinaryFile.
+ * People already present in the binary file are not overwritten.
+ * 
+ * Usage: java model.dao.BinaryFileConverter [file|ser]
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class BinaryFileConverter {
+
+    /**
+     * Streams the source storage system and copies every person that is not
+     * in the binary file yet.
+     * @param source DAO the people are read from
+     * @param target binary file DAO
+     * @return number of people copied
+     * @throws Exception 
+     */
+    public static int convert(IDAO source, DAOBinaryFile target) throws Exception {
+        List<Person> people;
+        try (Stream<Person> all = source.readStream()) {
+            people = all.filter(p -> !target.contains(p.getNif())).collect(Collectors.toList());
+        }
+        //All the records are appended with a single write
+        target.insertAll(people);
+        return people.size();
+    }
+
+    public static int convertFromFile() throws Exception {
+        if (!new File(Routes.FILE.getDataFile()).exists()) {
+            throw new IOException(Routes.FILE.getDataFile() + " does not exist.");
+        }
+        return convert(new DAOFile(), newTarget());
+    }
+
+    public static int convertFromSerialization() throws Exception {
+        if (!new File(Routes.FILES.getDataFile()).exists()) {
+            throw new IOException(Routes.FILES.getDataFile() + " does not exist.");
+        }
+        DAOFileSerializable source = new DAOFileSerializable();
+        try {
+            return convert(source, newTarget());
+        } finally {
+            source.close();
+        }
+    }
+
+    private static DAOBinaryFile newTarget() throws IOException {
+        new File(Routes.FILEB.getFolderPath()).mkdir();
+        new File(Routes.FILEB.getFolderPhotos()).mkdir();
+        return new DAOBinaryFile();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String from = args.length > 0 ? args[0] : "file";
+        int copied;
+        switch (from) {
+            case "file" ->
+                copied = convertFromFile();
+            case "ser" ->
+                copied = convertFromSerialization();
+            default -> {
+                System.out.println("Usage: BinaryFileConverter [file|ser]");
+                return;
+            }
+        }
+        System.out.println(copied + " people copied to " + Routes.FILEB.getDataFile());
+    }
+}
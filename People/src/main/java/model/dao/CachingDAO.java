@@ -0,0 +1,352 @@
+package model.dao;
+
+import model.entity.Person;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the IDAO interface on top of another IDAO and keeps
+ * the people read by NIF in memory, so reading the same person again (read
+ * for update and then update, read after read) does not go to the storage
+ * system. The cache is bounded and evicts the least recently used person.
+ *
+ * Another program may write the same storage system (SQL, JPA, the files),
+ * so nothing is cached forever: people are cached for DEFAULT_TTL and NIFs
+ * that are not registered for NEGATIVE_TTL, after which they are read again.
+ * The number of people is cached for DEFAULT_TTL too and kept up to date
+ * meanwhile by the writes that know how many people they add or delete; the
+ * others make it be counted again.
+ *
+ * Writes go to the storage system first and then remove the people written
+ * from the cache, which are read again from the storage system the next
+ * time (it may not store every field, e.g. DAOJPA.update). A read that
+ * overlaps a write does not cache what it read. The people returned by
+ * read() are shared by the cache and must not be modified.
+ *
+ * readAll, readPage and readStream go straight to the storage system.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class CachingDAO implements IDAO {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final long DEFAULT_TTL = TimeUnit.SECONDS.toNanos(30);
+    public static final long NEGATIVE_TTL = TimeUnit.SECONDS.toNanos(5);
+    private static final int COUNT_UNKNOWN = -1;
+
+    /**
+     * Person read, or null if the NIF is not registered, and the time
+     * (System.nanoTime) it expires.
+     */
+    private static final class Entry {
+
+        private final Person person;
+        private final long expiry;
+
+        private Entry(Person person, long expiry) {
+            this.person = person;
+            this.expiry = expiry;
+        }
+
+        private boolean isValid() {
+            return System.nanoTime() - expiry < 0;
+        }
+    }
+
+    private final IDAO dao;
+    private final int capacity;
+    private final long ttl;
+    private final long negativeTtl;
+    //NIF -> entry, in access order
+    private final LinkedHashMap<String, Entry> cache;
+    private int count = COUNT_UNKNOWN;
+    private long countExpiry;
+    //Writes done, a read only caches what it read if none happened meanwhile
+    private long writes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param dao storage system
+     */
+    public CachingDAO(IDAO dao) {
+        this(dao, DEFAULT_CAPACITY, DEFAULT_TTL, NEGATIVE_TTL);
+    }
+
+    /**
+     * @param dao storage system
+     * @param capacity maximum number of NIFs cached
+     * @param ttl nanoseconds a person and the number of people are cached
+     * @param negativeTtl nanoseconds a NIF not registered is cached
+     */
+    public CachingDAO(IDAO dao, int capacity, long ttl, long negativeTtl) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.dao = dao;
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CachingDAO.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Person read(Person p) throws Exception {
+        long writesBefore;
+        synchronized (this) {
+            Entry cached = cache.get(p.getNif());
+            if (cached != null && cached.isValid()) {
+                hits++;
+                return cached.person;
+            }
+            misses++;
+            writesBefore = writes;
+        }
+        Person read = dao.read(p);
+        synchronized (this) {
+            if (writes == writesBefore) {
+                cache.put(p.getNif(), new Entry(read, System.nanoTime() + (read != null ? ttl : negativeTtl)));
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public ArrayList<Person> readAll() throws Exception {
+        return dao.readAll();
+    }
+
+    @Override
+    public Stream<Person> readStream() throws Exception {
+        return dao.readStream();
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) throws Exception {
+        return dao.readPage(afterNif, limit);
+    }
+
+    @Override
+    public void insert(Person p) throws Exception {
+        try {
+            dao.insert(p);
+        } finally {
+            invalidate(p.getNif(), true);
+        }
+    }
+
+    @Override
+    public void update(Person p) throws Exception {
+        try {
+            dao.update(p);
+        } finally {
+            invalidate(p.getNif(), false);
+        }
+    }
+
+    @Override
+    public void delete(Person p) throws Exception {
+        try {
+            dao.delete(p);
+        } finally {
+            invalidate(p.getNif(), true);
+        }
+    }
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) throws Exception {
+        WriteOutcome outcome;
+        try {
+            outcome = dao.insertIfAbsent(p);
+        } catch (Exception ex) {
+            invalidate(p.getNif(), true);
+            throw ex;
+        }
+        synchronized (this) {
+            writes++;
+            cache.remove(p.getNif());
+            if (outcome == WriteOutcome.INSERTED && count != COUNT_UNKNOWN) {
+                count++;
+            }
+        }
+        return outcome;
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) throws Exception {
+        WriteOutcome outcome;
+        try {
+            outcome = dao.deleteIfPresent(p);
+        } catch (Exception ex) {
+            invalidate(p.getNif(), true);
+            throw ex;
+        }
+        synchronized (this) {
+            writes++;
+            cache.put(p.getNif(), new Entry(null, System.nanoTime() + negativeTtl));
+            if (outcome == WriteOutcome.DELETED && count != COUNT_UNKNOWN) {
+                count--;
+            }
+        }
+        return outcome;
+    }
+
+    @Override
+    public void insertAll(Collection<Person> people) throws Exception {
+        try {
+            dao.insertAll(people);
+        } finally {
+            synchronized (this) {
+                for (Person p : people) {
+                    cache.remove(p.getNif());
+                }
+                writes++;
+                count = COUNT_UNKNOWN;
+            }
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> people) throws Exception {
+        try {
+            dao.updateAll(people);
+        } finally {
+            synchronized (this) {
+                for (Person p : people) {
+                    cache.remove(p.getNif());
+                }
+                writes++;
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) throws Exception {
+        try {
+            dao.deleteAll(nifs);
+        } finally {
+            synchronized (this) {
+                for (String nif : nifs) {
+                    cache.remove(nif);
+                }
+                writes++;
+                count = COUNT_UNKNOWN;
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll() throws Exception {
+        boolean deleted = false;
+        try {
+            dao.deleteAll();
+            deleted = true;
+        } finally {
+            synchronized (this) {
+                cache.clear();
+                writes++;
+                count = deleted ? 0 : COUNT_UNKNOWN;
+                countExpiry = System.nanoTime() + ttl;
+            }
+        }
+    }
+
+    /**
+     * @return the number of people, counted by the storage system only if it
+     * is not known or it was counted more than ttl nanoseconds ago
+     */
+    @Override
+    public int count() throws Exception {
+        long writesBefore;
+        synchronized (this) {
+            if (count != COUNT_UNKNOWN && System.nanoTime() - countExpiry < 0) {
+                return count;
+            }
+            writesBefore = writes;
+        }
+        int counted = dao.count();
+        synchronized (this) {
+            if (writes == writesBefore) {
+                count = counted;
+                countExpiry = System.nanoTime() + ttl;
+            }
+        }
+        return counted;
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        dao.exportToCsv();
+    }
+
+    /**
+     * Removes the NIF from the cache after a write.
+     * @param countChanged true if the write may have changed the number of
+     * people
+     */
+    private synchronized void invalidate(String nif, boolean countChanged) {
+        cache.remove(nif);
+        writes++;
+        if (countChanged) {
+            count = COUNT_UNKNOWN;
+        }
+    }
+
+    /**
+     * @return storage system wrapped
+     */
+    public IDAO getDao() {
+        return dao;
+    }
+
+    /**
+     * @return reads answered by the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return reads that went to the storage system
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return people removed from the cache because it was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of NIFs cached
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long reads = hits + misses;
+        return "CachingDAO {" + dao.getClass().getSimpleName() + ", size = " + cache.size()
+                + "/" + capacity + ", hits = " + hits + ", misses = " + misses
+                + ", hit rate = " + (reads == 0 ? 0 : 100 * hits / reads) + "%"
+                + ", evictions = " + evictions + "}";
+    }
+}
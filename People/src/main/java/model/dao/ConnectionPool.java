@@ -0,0 +1,449 @@
+package model.dao;
+
+import start.Routes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of JDBC connections shared by DAOSQL and the login code.
+ * There is one pool per server address, connection options and user, so the
+ * "people" and "login" databases of the same MySQL server share their
+ * connections when both routes have the same options. The size and the idle
+ * timeout are configured in Routes.DB and Routes.LOGIN; when both routes use
+ * the same pool the larger size is used.
+ *
+ * getConnection() returns a proxy of the physical connection: calling close()
+ * on it gives the connection back to the pool instead of closing it. A
+ * connection is validated when it is borrowed after having been idle for
+ * more than a second, idle connections are closed after the idle timeout and
+ * connections that are not given back within a minute are reported as leaks
+ * with the thread that borrowed them and when. With
+ * -Dpeople.pool.traceLeaks=true the report also has the stack trace of the
+ * code that borrowed them, which costs a stack walk per borrow.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class ConnectionPool {
+
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
+    private static final long VALIDATION_INTERVAL_MILLIS = 1_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long LEAK_THRESHOLD_MILLIS = 60_000;
+    private static final long HOUSEKEEPING_PERIOD_SECONDS = 10;
+    private static final boolean TRACE_LEAKS = Boolean.getBoolean("people.pool.traceLeaks");
+
+    //address + user -> pool
+    private static final HashMap<String, ConnectionPool> POOLS = new HashMap<>();
+    private static ScheduledExecutorService housekeeper;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    private int maxSize;
+    //Most recently used connection last, borrowed first
+    private final ArrayDeque<IdleConnection> idle = new ArrayDeque<>();
+    private final Set<Lease> borrowed = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    ConnectionPool(String url, String user, String password, int maxSize, long idleTimeoutMillis,
+            long borrowTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the pool of the server of the route, creating it the first time.
+     * @param route Routes.DB or Routes.LOGIN
+     * @return the shared pool
+     */
+    public static ConnectionPool get(Routes route) {
+        String url = route.getDbServerAddress() + (route.getDbServerComOpt() != null ? route.getDbServerComOpt() : "");
+        return get(url, route.getDbServerUser(), route.getDbServerPassword(),
+                route.getDbPoolSize(), TimeUnit.SECONDS.toMillis(route.getDbPoolIdleTimeout()));
+    }
+
+    /**
+     * Returns the pool of the URL and user, creating it the first time or
+     * growing it to the given size.
+     * @param url address and connection options
+     * @param user
+     * @param password
+     * @param size maximum connections
+     * @param idleTimeoutMillis time an idle connection is kept
+     * @return the shared pool
+     */
+    static synchronized ConnectionPool get(String url, String user, String password, int size, long idleTimeoutMillis) {
+        String key = url + "|" + user;
+        size = Math.max(1, size);
+        ConnectionPool pool = POOLS.get(key);
+        if (pool == null || pool.closed) {
+            pool = new ConnectionPool(url, user, password, size, idleTimeoutMillis, BORROW_TIMEOUT_MILLIS);
+            POOLS.put(key, pool);
+            startHousekeeper();
+        } else {
+            pool.grow(size);
+        }
+        return pool;
+    }
+
+    /**
+     * Closes every pool. Registered as a shutdown hook so that the server does
+     * not keep the sessions open until its own timeout.
+     */
+    public static synchronized void closeAll() {
+        for (ConnectionPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+            housekeeper = null;
+        }
+    }
+
+    private static void startHousekeeper() {
+        if (housekeeper != null) {
+            return;
+        }
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ConnectionPool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(ConnectionPool::houseKeepAll,
+                HOUSEKEEPING_PERIOD_SECONDS, HOUSEKEEPING_PERIOD_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(ConnectionPool::closeAll, "ConnectionPool-shutdown"));
+    }
+
+    private static void houseKeepAll() {
+        ArrayList<ConnectionPool> pools;
+        synchronized (ConnectionPool.class) {
+            pools = new ArrayList<>(POOLS.values());
+        }
+        for (ConnectionPool pool : pools) {
+            pool.evictIdle();
+            pool.detectLeaks();
+        }
+    }
+
+    private synchronized void grow(int size) {
+        if (size > maxSize) {
+            permits.release(size - maxSize);
+            maxSize = size;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting up to 30 seconds if all of them are in use.
+     * The connection must be closed to give it back to the pool.
+     * @return connection
+     * @throws SQLException if the pool is exhausted or the server is not
+     * available
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool closed: " + url);
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("No connection available after " + borrowTimeoutMillis
+                        + " ms (" + getActiveConnections() + " in use): " + url);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", ex);
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = DriverManager.getConnection(url, user, password);
+                created.incrementAndGet();
+            }
+            borrows.incrementAndGet();
+            Lease lease = new Lease(physical);
+            borrowed.add(lease);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, lease);
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return a valid idle connection, or null if a new one must be opened
+     */
+    private Connection takeIdle() {
+        while (true) {
+            IdleConnection candidate;
+            synchronized (this) {
+                candidate = idle.pollLast();
+            }
+            if (candidate == null) {
+                return null;
+            }
+            long idleFor = System.currentTimeMillis() - candidate.since;
+            if (idleFor > idleTimeoutMillis) {
+                evictions.incrementAndGet();
+                destroy(candidate.connection);
+            } else if (idleFor > VALIDATION_INTERVAL_MILLIS && !isValid(candidate.connection)) {
+                validationFailures.incrementAndGet();
+                destroy(candidate.connection);
+            } else {
+                return candidate.connection;
+            }
+        }
+    }
+
+    private boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void giveBack(Lease lease) {
+        borrowed.remove(lease);
+        Connection physical = lease.physical;
+        boolean reusable = !closed;
+        try {
+            if (reusable && !physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            reusable = false;
+        }
+        if (reusable) {
+            synchronized (this) {
+                idle.addLast(new IdleConnection(physical, System.currentTimeMillis()));
+            }
+        } else {
+            destroy(physical);
+        }
+        permits.release();
+    }
+
+    private void destroy(Connection conn) {
+        destroyed.incrementAndGet();
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            System.out.println("Error closing pooled connection: " + ex.getMessage());
+        }
+    }
+
+    void evictIdle() {
+        ArrayList<Connection> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<IdleConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                IdleConnection ic = it.next();
+                if (now - ic.since > idleTimeoutMillis) {
+                    it.remove();
+                    expired.add(ic.connection);
+                }
+            }
+        }
+        for (Connection conn : expired) {
+            evictions.incrementAndGet();
+            destroy(conn);
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : borrowed) {
+            if (!lease.reported && now - lease.borrowedAt > LEAK_THRESHOLD_MILLIS) {
+                lease.reported = true;
+                leaks.incrementAndGet();
+                System.out.println("Possible connection leak: connection borrowed by "
+                        + lease.thread + " " + (now - lease.borrowedAt) + " ms ago and not closed.");
+                if (lease.borrowedBy != null) {
+                    lease.borrowedBy.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections and refuses new borrows. Borrowed
+     * connections are closed when they are given back.
+     */
+    public void close() {
+        closed = true;
+        ArrayList<IdleConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (IdleConnection ic : toClose) {
+            destroy(ic.connection);
+        }
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public synchronized int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getThreadsWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public long getConnectionsCreated() {
+        return created.get();
+    }
+
+    public long getConnectionsDestroyed() {
+        return destroyed.get();
+    }
+
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    /**
+     * @return average time waiting for a free connection in microseconds
+     */
+    public long getAverageWaitMicros() {
+        long n = borrows.get();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitNanos.get()) / n;
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    public long getIdleEvictions() {
+        return evictions.get();
+    }
+
+    public long getLeaksDetected() {
+        return leaks.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" + url + ", user=" + user + ", max=" + getMaxSize()
+                + ", active=" + getActiveConnections() + ", idle=" + getIdleConnections()
+                + ", waiting=" + getThreadsWaiting() + ", created=" + getConnectionsCreated()
+                + ", destroyed=" + getConnectionsDestroyed() + ", borrows=" + getBorrowCount()
+                + ", avgWaitMicros=" + getAverageWaitMicros() + ", timeouts=" + getTimeouts()
+                + ", validationFailures=" + getValidationFailures()
+                + ", evictions=" + getIdleEvictions() + ", leaks=" + getLeaksDetected() + '}';
+    }
+
+    private static final class IdleConnection {
+
+        private final Connection connection;
+        private final long since;
+
+        private IdleConnection(Connection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Handler of the proxy returned to the caller. close() gives the physical
+     * connection back once, any other call after that fails like a closed
+     * connection.
+     */
+    private final class Lease implements InvocationHandler {
+
+        private final Connection physical;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final String thread = Thread.currentThread().getName();
+        //Only captured when TRACE_LEAKS is set
+        private final Throwable borrowedBy = TRACE_LEAKS ? new Throwable("Connection borrowed here") : null;
+        private volatile boolean reported;
+        private volatile boolean returned;
+
+        private Lease(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) {
+                            return null;
+                        }
+                        returned = true;
+                    }
+                    giveBack(this);
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -2,68 +2,177 @@ package model.dao;
 
 import model.entity.Person;
 import java.util.ArrayList;
-import java.util.Date;
-import javax.swing.ImageIcon;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.stream.Stream;
 import utils.FileManagement;
 
 /**
- * This class implements the IDAO interface and completes the code blocks of 
- * the functions so that they can operate with an ArrayList structure. Thanks 
- * to the overriding of the "equals" method in the Person class, the ArrayList 
- * will not be able to contain objects with the same NIF.
- * @author Francesc Perez 
+ * This class implements the IDAO interface and completes the code blocks of
+ * the functions so that they can operate with an ArrayList structure. The
+ * people are kept in the order they were inserted, and a HashMap from NIF to
+ * position in the ArrayList finds them without going through the list, so
+ * read, update and delete do not depend on the number of people. The
+ * ArrayList can not contain two people with the same NIF.
+ *
+ * A person deleted leaves an empty position (null) so that the others keep
+ * their position and order. When more than half of the positions are empty
+ * the list is compacted and the positions are recalculated.
+ * @author Francesc Perez
  * @version 1.1.0
  */
 public class DAOArrayList implements IDAO{
-    
+
+    //Empty positions below which the list is not compacted
+    private static final int MIN_COMPACTION = 16;
+
     ArrayList <Person> people = new ArrayList<>();
+    //NIF -> position of the person in people
+    private final HashMap<String, Integer> positions = new HashMap<>();
+    private int deleted;
 
     @Override
     public Person read(Person p){
-        return people.contains(p) ? people.get(people.indexOf(p)) : null;
+        Integer position = positions.get(p.getNif());
+        return position != null ? people.get(position) : null;
     }
-    
+
+    /**
+     * A person already registered is replaced in its position.
+     * @param p
+     */
     @Override
     public void insert(Person p) {
-        people.add(p);
+        Integer position = positions.putIfAbsent(p.getNif(), people.size());
+        if (position != null) {
+            people.set(position, p);
+        } else {
+            people.add(p);
+        }
     }
-    
+
     @Override
     public void delete(Person p){
-        people.remove(p);
+        remove(p.getNif());
     }
-    
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) {
+        if (positions.putIfAbsent(p.getNif(), people.size()) != null) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        people.add(p);
+        return WriteOutcome.INSERTED;
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) {
+        return remove(p.getNif()) ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+    }
+
     @Override
     public void deleteAll(){
         people.clear();
+        positions.clear();
+        deleted = 0;
+    }
+
+    @Override
+    public void insertAll(Collection<Person> newPeople) {
+        people.ensureCapacity(people.size() + newPeople.size());
+        for (Person p : newPeople) {
+            insert(p);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> updatedPeople) {
+        for (Person p : updatedPeople) {
+            update(p);
+        }
     }
-    
+
+    @Override
+    public void deleteAll(Collection<String> nifs) {
+        for (String nif : nifs) {
+            remove(nif);
+        }
+    }
+
+    /**
+     * A person not registered is ignored.
+     * @param p
+     */
     @Override
     public void update(Person p){
-        people.set(people.indexOf(p), p);
+        Integer position = positions.get(p.getNif());
+        if (position != null) {
+            people.set(position, p);
+        }
     }
-    
+
+    /**
+     * Leaves the position of the NIF empty and compacts the list if more than
+     * half of it is empty.
+     * @return true if the NIF was registered
+     */
+    private boolean remove(String nif) {
+        Integer position = positions.remove(nif);
+        if (position == null) {
+            return false;
+        }
+        people.set(position, null);
+        deleted++;
+        if (deleted > MIN_COMPACTION && deleted > people.size() / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < people.size(); i++) {
+            Person p = people.get(i);
+            if (p != null) {
+                people.set(kept, p);
+                positions.put(p.getNif(), kept);
+                kept++;
+            }
+        }
+        people.subList(kept, people.size()).clear();
+        deleted = 0;
+    }
+
     @Override
     public ArrayList<Person> readAll(){
-        return people;
+        ArrayList<Person> all = new ArrayList<>(positions.size());
+        for (Person p : people) {
+            if (p != null) {
+                all.add(p);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public Stream<Person> readStream(){
+        return people.stream().filter(Objects::nonNull);
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit){
+        return Pages.select(readStream().iterator(), afterNif, limit);
     }
     @Override
     public int count(){
-        int cont = 0;
-        for(Person person : people) {
-            cont ++;
-        }
-        return cont;
+        return positions.size();
     }
-   @Override
+    @Override
     public void exportToCsv() throws Exception {
-        //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
 }
@@ -0,0 +1,595 @@
+package model.dao;
+
+import model.entity.Person;
+import start.Routes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import utils.FileManagement;
+import utils.PhotoStore;
+
+/**
+ * This class implements the IDAO interface and completes the code of the
+ * functions so that they can work with a binary file. User data is saved in
+ * the "dataFile.bin" file and the associated photos, if any, are saved in the
+ * "Photos" folder by a PhotoStore, once per different photo.
+ *
+ * The file starts with a header (magic number, format version and flags)
+ * followed by the records. Every record has a fixed part (length of the
+ * record, status and date of birth as epoch day) and the NIF, name, postal
+ * code, phone number, email and photo hash as length-prefixed UTF-8 strings.
+ * An in-memory index maps every NIF to the offset of its record, so reads
+ * and deletes go straight to the record. Deletes only clear the status byte
+ * and updates append the new record before clearing the status byte of the
+ * old one; the file is compacted when dead records take more space than live
+ * ones.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class DAOBinaryFile implements IDAO, IOCounted {
+
+    public static final int MAGIC = 0x50504C42; //"PPLB"
+    public static final short VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    //status (1) + date of birth (4)
+    private static final int FIXED_SIZE = 5;
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 0;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NULL_STRING = 0xFFFF;
+
+    //NIF -> offset of the record, sorted by NIF to read pages
+    private final TreeMap<String, Long> index = new TreeMap<>();
+    private final PhotoStore photos = new PhotoStore(Routes.FILEB.getFolderPhotos());
+    private final IOCounters io = new IOCounters();
+    //NIF -> photo reference of the live record of the people with photo
+    private final HashMap<String, String> photoRefs = new HashMap<>();
+    private long deadBytes;
+    private long liveBytes;
+    //Incremented every time the data file is replaced or truncated
+    private long generation;
+
+    public DAOBinaryFile() throws IOException {
+        File file = new File(Routes.FILEB.getDataFile());
+        if (!file.exists() || file.length() == 0) {
+            writeHeader(file);
+        }
+        rebuildIndex();
+        photos.recount(photoRefs.values());
+    }
+
+    private void writeHeader(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(io.count(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+        }
+    }
+
+    /**
+     * Checks the header and walks the record headers to find the offset of
+     * every live record. Only the NIF and the photo of each record are
+     * decoded.
+     * @throws IOException if the file is not a People binary file or its
+     * version is not supported
+     */
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        photoRefs.clear();
+        deadBytes = 0;
+        liveBytes = 0;
+        try (RandomAccessFile raf = io.open(Routes.FILEB.getDataFile(), "rw")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException(Routes.FILEB.getDataFile() + " is not a People binary file.");
+            }
+            short version = raf.readShort();
+            if (version != VERSION) {
+                throw new IOException("Binary file version " + version + " is not supported.");
+            }
+            long offset = HEADER_SIZE;
+            long length = raf.length();
+            while (offset + 4 + FIXED_SIZE <= length) {
+                raf.seek(offset);
+                int recordLength = raf.readInt();
+                if (offset + 4 + recordLength > length) {
+                    break;
+                }
+                byte status = raf.readByte();
+                raf.readInt();
+                if (status == LIVE) {
+                    String nif = readString(raf);
+                    //Name, postal code, phone number and email
+                    for (int i = 0; i < 4; i++) {
+                        skipString(raf);
+                    }
+                    String photoReference = readString(raf);
+                    if (photoReference != null) {
+                        photoRefs.put(nif, photoReference);
+                    } else {
+                        photoRefs.remove(nif);
+                    }
+                    liveBytes += 4 + recordLength;
+                    if (index.containsKey(nif)) {
+                        //The NIF was appended again without deleting its
+                        //older record, only the last one is live
+                        markDeleted(raf, nif);
+                    }
+                    index.put(nif, offset);
+                } else {
+                    deadBytes += 4 + recordLength;
+                }
+                offset += 4 + recordLength;
+            }
+            if (offset < length) {
+                //Record cut by a crash while it was being appended
+                raf.setLength(offset);
+            }
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(DataInput in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length != NULL_STRING) {
+            in.skipBytes(length);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeShort(NULL_STRING);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= NULL_STRING) {
+                throw new IOException("Field too long to be stored: " + s.length() + " characters.");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static int toEpochDay(Date date) {
+        if (date == null) {
+            return NO_DATE;
+        }
+        return (int) Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault())
+                .toLocalDate().toEpochDay();
+    }
+
+    static Date fromEpochDay(int epochDay) {
+        if (epochDay == NO_DATE) {
+            return null;
+        }
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Encodes a person as a complete record, length included.
+     * @param p
+     * @param photoReference hash of the stored photo, or null
+     * @return
+     * @throws IOException
+     */
+    private byte[] encode(Person p, String photoReference) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(LIVE);
+        out.writeInt(toEpochDay(p.getDateOfBirth()));
+        writeString(out, p.getNif());
+        writeString(out, p.getName());
+        writeString(out, p.getPostalCode());
+        writeString(out, p.getPhoneNumber());
+        writeString(out, p.getEmail());
+        writeString(out, photoReference);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(body.size() + 4);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(body.size());
+        body.writeTo(recordOut);
+        return record.toByteArray();
+    }
+
+    /**
+     * Decodes the record that starts at the current position of the input.
+     * @param in
+     * @return the person or null if the record is deleted
+     * @throws IOException
+     */
+    private Person decode(DataInput in) throws IOException {
+        int recordLength = in.readInt();
+        byte status = in.readByte();
+        if (status != LIVE) {
+            in.skipBytes(recordLength - 1);
+            return null;
+        }
+        Date date = fromEpochDay(in.readInt());
+        String nif = readString(in);
+        String name = readString(in);
+        String postalCode = readString(in);
+        String phoneNumber = readString(in);
+        String email = readString(in);
+        String photoReference = readString(in);
+        Person p = new Person(name, nif, postalCode, phoneNumber, email, date, null);
+        if (photoReference != null) {
+            p.setPhotoSource(photos.loader(photoReference), photoReference);
+        }
+        return p;
+    }
+
+    /**
+     * Stores the photo of the person and sets it as its photo.
+     * @param p
+     * @param replaced receives the reference of the previous photo, to be
+     * released once the record is written
+     * @return hash of the photo, or null if the person has no photo
+     * @throws IOException
+     */
+    private String savePhoto(Person p, ArrayList<String> replaced) throws IOException {
+        String reference = p.getPhoto() != null ? photos.put(p.getPhoto()) : null;
+        replaced.add(reference != null ? photoRefs.put(p.getNif(), reference) : photoRefs.remove(p.getNif()));
+        return reference;
+    }
+
+    private void release(Collection<String> references) throws IOException {
+        for (String reference : references) {
+            photos.release(reference);
+        }
+    }
+
+    @Override
+    public synchronized Person read(Person p) throws IOException {
+        Long offset = index.get(p.getNif());
+        if (offset == null) {
+            return null;
+        }
+        try (RandomAccessFile raf = io.open(Routes.FILEB.getDataFile(), "r")) {
+            raf.seek(offset);
+            return decode(raf);
+        }
+    }
+
+    /**
+     * Walks the index from afterNif and decodes only the records of the page.
+     */
+    @Override
+    public synchronized ArrayList<Person> readPage(String afterNif, int limit) throws IOException {
+        ArrayList<Person> page = new ArrayList<>(Math.min(limit, index.size()));
+        Map<String, Long> entries = afterNif == null ? index : index.tailMap(afterNif, false);
+        try (RandomAccessFile raf = io.open(Routes.FILEB.getDataFile(), "r")) {
+            for (Long offset : entries.values()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                raf.seek(offset);
+                page.add(decode(raf));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Scans the file as readStream, so only the record the index points to is
+     * returned for every NIF.
+     */
+    @Override
+    public synchronized ArrayList<Person> readAll() throws IOException {
+        ArrayList<Person> people = new ArrayList<>(index.size());
+        try (Stream<Person> records = readStream()) {
+            records.forEach(people::add);
+        } catch (UncheckedDAOException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+        return people;
+    }
+
+    /**
+     * Reads the records one by one while the stream is consumed. Only the
+     * record the index points to is returned for every NIF. If the file is
+     * compacted or emptied while the stream is open the stream fails with a
+     * ConcurrentModificationException.
+     */
+    @Override
+    public Stream<Person> readStream() throws IOException {
+        long expectedGeneration;
+        DataInputStream in;
+        synchronized (this) {
+            expectedGeneration = generation;
+            in = new DataInputStream(new BufferedInputStream(io.count(new FileInputStream(Routes.FILEB.getDataFile())), 64 * 1024));
+        }
+        in.skipBytes(HEADER_SIZE);
+        Spliterator<Person> records = new Spliterators.AbstractSpliterator<Person>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long offset = HEADER_SIZE;
+            private byte[] record = new byte[256];
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Person> action) {
+                try {
+                    while (true) {
+                        int recordLength;
+                        try {
+                            recordLength = in.readInt();
+                            if (record.length < 4 + recordLength) {
+                                record = new byte[Math.max(4 + recordLength, record.length * 2)];
+                            }
+                            in.readFully(record, 4, recordLength);
+                        } catch (EOFException ex) {
+                            return false;
+                        }
+                        long recordStart = offset;
+                        offset += 4 + recordLength;
+                        if (record[4] != LIVE) {
+                            continue;
+                        }
+                        DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record, 0, 4 + recordLength));
+                        recordIn.skipBytes(4 + FIXED_SIZE);
+                        String nif = readString(recordIn);
+                        Long live;
+                        synchronized (DAOBinaryFile.this) {
+                            if (generation != expectedGeneration) {
+                                throw new ConcurrentModificationException(Routes.FILEB.getDataFile() + " has been rewritten.");
+                            }
+                            live = index.get(nif);
+                        }
+                        if (live != null && live == recordStart) {
+                            ByteBuffer.wrap(record).putInt(0, recordLength);
+                            action.accept(decode(new DataInputStream(new ByteArrayInputStream(record, 0, 4 + recordLength))));
+                            return true;
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedDAOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(records, false).onClose(() -> {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                throw new UncheckedDAOException(ex);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void insert(Person p) throws IOException {
+        insertAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Encodes all the people and appends their records with a single write.
+     */
+    @Override
+    public synchronized void insertAll(Collection<Person> people) throws IOException {
+        LinkedHashMap<String, byte[]> records = new LinkedHashMap<>();
+        ArrayList<String> replaced = new ArrayList<>();
+        for (Person p : people) {
+            records.put(p.getNif(), encode(p, savePhoto(p, replaced)));
+        }
+        append(records);
+        release(replaced);
+        compactIfNeeded();
+    }
+
+    /**
+     * Writes the records at the end of the file and indexes them. The
+     * previous record of every NIF already registered is marked as deleted
+     * after the new one is written, so a crash in between leaves two live
+     * records and rebuildIndex() keeps the last one.
+     * @param records NIF -> encoded record
+     * @throws IOException 
+     */
+    private void append(Map<String, byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (byte[] record : records.values()) {
+            batch.write(record);
+        }
+        try (RandomAccessFile raf = io.open(Routes.FILEB.getDataFile(), "rw")) {
+            long offset = raf.length();
+            raf.seek(offset);
+            raf.write(batch.toByteArray());
+            for (Map.Entry<String, byte[]> record : records.entrySet()) {
+                markDeleted(raf, record.getKey());
+                index.put(record.getKey(), offset);
+                offset += record.getValue().length;
+                liveBytes += record.getValue().length;
+            }
+        }
+    }
+
+    /**
+     * Marks the record as deleted by clearing its status byte.
+     * @param raf
+     * @param nif
+     * @return false if there was no record with that NIF
+     * @throws IOException
+     */
+    private boolean markDeleted(RandomAccessFile raf, String nif) throws IOException {
+        Long offset = index.remove(nif);
+        if (offset == null) {
+            return false;
+        }
+        raf.seek(offset);
+        int recordLength = raf.readInt();
+        raf.writeByte(DELETED);
+        liveBytes -= 4 + recordLength;
+        deadBytes += 4 + recordLength;
+        return true;
+    }
+
+    /**
+     * Checks the index without reading the data file.
+     * @param nif
+     * @return true if there is a live record with that NIF
+     */
+    synchronized boolean contains(String nif) {
+        return index.containsKey(nif);
+    }
+
+    @Override
+    public synchronized void update(Person p) throws IOException {
+        updateAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Records are never overwritten in place: the new versions are appended
+     * together at the end of the file and then the old ones are marked as
+     * deleted, so a crash never loses the last version written.
+     */
+    @Override
+    public synchronized void updateAll(Collection<Person> people) throws IOException {
+        insertAll(people);
+    }
+
+    @Override
+    public synchronized void delete(Person p) throws IOException {
+        deleteAll(Collections.singletonList(p.getNif()));
+    }
+
+    /**
+     * Checks the index, the data file is only written if the NIF is new.
+     */
+    @Override
+    public synchronized WriteOutcome insertIfAbsent(Person p) throws IOException {
+        if (index.containsKey(p.getNif())) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        insert(p);
+        return WriteOutcome.INSERTED;
+    }
+
+    /**
+     * Checks the index, the data file is only written if the NIF exists.
+     */
+    @Override
+    public synchronized WriteOutcome deleteIfPresent(Person p) throws IOException {
+        if (!index.containsKey(p.getNif())) {
+            return WriteOutcome.NOT_REGISTERED;
+        }
+        delete(p);
+        return WriteOutcome.DELETED;
+    }
+
+    @Override
+    public synchronized void deleteAll(Collection<String> nifs) throws IOException {
+        ArrayList<String> replaced = new ArrayList<>();
+        try (RandomAccessFile raf = io.open(Routes.FILEB.getDataFile(), "rw")) {
+            for (String nif : nifs) {
+                if (markDeleted(raf, nif)) {
+                    replaced.add(photoRefs.remove(nif));
+                }
+            }
+        }
+        release(replaced);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void deleteAll() throws IOException {
+        writeHeader(new File(Routes.FILEB.getDataFile()));
+        generation++;
+        index.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+        photoRefs.clear();
+        photos.deleteAll();
+    }
+
+    /**
+     * Rewrites the file with the live records only when the deleted ones
+     * take more space. The new file is written to a temporary file that
+     * replaces the data file with an atomic rename.
+     * @throws IOException
+     */
+    private void compactIfNeeded() throws IOException {
+        if (deadBytes <= liveBytes) {
+            return;
+        }
+        Path data = Paths.get(Routes.FILEB.getDataFile());
+        Path tmp = Paths.get(Routes.FILEB.getDataFile() + ".tmp");
+        try (RandomAccessFile in = io.open(data.toFile(), "r");
+                FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(io.count(fos)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                in.seek(entry.getValue());
+                byte[] record = new byte[4 + in.readInt()];
+                in.seek(entry.getValue());
+                in.readFully(record);
+                out.write(record);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        rebuildIndex();
+    }
+
+    @Override
+    public synchronized int count() {
+        return index.size();
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
+        }
+    }
+
+    @Override
+    public IOCounters getIOCounters() {
+        return io;
+    }
+}
@@ -0,0 +1,138 @@
+package model.dao;
+
+import model.entity.Person;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import utils.FileManagement;
+
+/**
+ * This class implements the IDAO interface with a ConcurrentHashMap, the NIF
+ * is used as the key. Unlike DAOHashMap, it can be used by several threads at
+ * the same time: reads do not lock, insertIfAbsent, update and the deletes
+ * are single atomic operations of the map, and count() does not go through
+ * the map, it is kept in a LongAdder updated by every write that adds or
+ * removes a person.
+ *
+ * readAll, readStream and readPage are weakly consistent: they never fail
+ * while other threads write, and they return every person registered before
+ * they started and not deleted meanwhile; writes done while they run may or
+ * may not be seen.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class DAOConcurrentHashMap implements IDAO {
+
+    private final ConcurrentHashMap<String, Person> people = new ConcurrentHashMap<>();
+    private final LongAdder size = new LongAdder();
+
+    @Override
+    public Person read(Person p) {
+        return people.get(p.getNif());
+    }
+
+    @Override
+    public void insert(Person p) {
+        if (people.put(p.getNif(), p) == null) {
+            size.increment();
+        }
+    }
+
+    @Override
+    public void delete(Person p) {
+        deleteIfPresent(p);
+    }
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) {
+        if (people.putIfAbsent(p.getNif(), p) == null) {
+            size.increment();
+            return WriteOutcome.INSERTED;
+        }
+        return WriteOutcome.ALREADY_REGISTERED;
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) {
+        return remove(p.getNif()) ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+    }
+
+    /**
+     * Removes the people one by one, so that count() stays right if other
+     * threads insert meanwhile.
+     */
+    @Override
+    public void deleteAll() {
+        for (String nif : people.keySet()) {
+            remove(nif);
+        }
+    }
+
+    @Override
+    public void update(Person p) {
+        people.replace(p.getNif(), p);
+    }
+
+    @Override
+    public void insertAll(Collection<Person> newPeople) {
+        for (Person p : newPeople) {
+            insert(p);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> updatedPeople) {
+        for (Person p : updatedPeople) {
+            people.replace(p.getNif(), p);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) {
+        for (String nif : nifs) {
+            remove(nif);
+        }
+    }
+
+    private boolean remove(String nif) {
+        if (people.remove(nif) != null) {
+            size.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public ArrayList<Person> readAll() {
+        return new ArrayList<>(people.values());
+    }
+
+    @Override
+    public Stream<Person> readStream() {
+        return people.values().stream();
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) {
+        return Pages.select(people.values().iterator(), afterNif, limit);
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
+        }
+    }
+
+    /**
+     * @return number of people, without going through the map. While other
+     * threads write it may not include the writes that have not finished.
+     */
+    @Override
+    public int count() {
+        return size.intValue();
+    }
+}
@@ -3,188 +3,649 @@ package model.dao;
 import model.entity.Person;
 import start.Routes;
 
-import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
-import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import utils.FileManagement;
+import utils.PhotoStore;
 
 /**
  * This class implements the IDAO interface and completes the code of the
  * functions so that they can work with files. User data is saved in the
- * "dataFile.txt" file and the associated photos, if any, are saved with the
- * name NIF.png in the "Photos" folder.
+ * "dataFile.txt" file and the associated photos, if any, are saved in the
+ * "Photos" folder by a PhotoStore, once per different photo; the last field
+ * of a line is the hash of the photo.
+ * An in-memory index maps every NIF to the byte offset of its record inside 
+ * the data file, so a person can be read with a single seek instead of 
+ * scanning the whole file. The index is rebuilt when the object is created and
+ * kept up to date by every operation that writes the file.
+ * 
+ * In log-structured mode the data file is append only: an update appends the
+ * new version of the record and a delete appends a tombstone line. When the
+ * ratio of dead lines reaches the configured limit a background task rewrites
+ * the file with the live records only (temporary file plus atomic rename, so 
+ * a crash leaves either the old or the new file, never half of one).
  * @author Francesc Perez
  * @version 1.1.0
  */
-public class DAOFile implements IDAO {
-
-    @Override
-    public Person read(Person p) throws Exception {
-        Person personToRead = null;
-        FileReader fr;
-        BufferedReader br;
-        fr = new FileReader(Routes.FILE.getDataFile());
-        br = new BufferedReader(fr);
-        String line;
-        line = br.readLine();
-        while (line != null) {
-            String data[] = line.split("\t");
-            if (data[1].equals(p.getNif())) {
-                Date date = null;
-                if (!data[5].equals("null")) {
-                    DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd");
-                    date = dateFormat.parse(data[5]);
+public class DAOFile implements IDAO, IOCounted {
+
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+    //First field of a tombstone line. It can not be a valid name.
+    private static final String TOMBSTONE = "<deleted>";
+    private static final byte[] TOMBSTONE_BYTES = TOMBSTONE.getBytes(StandardCharsets.UTF_8);
+
+    //NIF -> offset (in bytes) of the line that stores that person, sorted by
+    //NIF to read pages
+    private final TreeMap<String, Long> index = new TreeMap<>();
+    private final PhotoStore photos = new PhotoStore(Routes.FILE.getFolderPhotos());
+    private final IOCounters io = new IOCounters();
+    //NIF -> photo reference of the live record of the people with photo
+    private final HashMap<String, String> photoRefs = new HashMap<>();
+    private final boolean logStructured;
+    private final double compactionRatio;
+    //Lines in the file and lines that are no longer live (old versions and 
+    //tombstones)
+    private long records;
+    private long deadRecords;
+    //Incremented every time the data file is replaced, the offsets of the
+    //index are no longer valid for streams opened on the previous file
+    private long generation;
+    private ExecutorService compactor;
+    private boolean compactionScheduled;
+
+    /**
+     * Creates a DAO that rewrites the data file on every delete and update.
+     * @throws IOException 
+     */
+    public DAOFile() throws IOException {
+        this.logStructured = false;
+        this.compactionRatio = 1;
+        rebuildIndex();
+        photos.recount(photoRefs.values());
+    }
+
+    /**
+     * Creates a DAO in log-structured mode.
+     * @param compactionRatio dead lines / total lines that triggers the 
+     * compaction of the data file, between 0 and 1
+     * @throws IOException 
+     */
+    public DAOFile(double compactionRatio) throws IOException {
+        if (compactionRatio <= 0 || compactionRatio > 1) {
+            throw new IllegalArgumentException("Compaction ratio must be in (0, 1]: " + compactionRatio);
+        }
+        this.logStructured = true;
+        this.compactionRatio = compactionRatio;
+        rebuildIndex();
+        photos.recount(photoRefs.values());
+    }
+
+    /**
+     * Scans the data file once and stores the offset and the photo reference
+     * of every live record. Only the name, the NIF and the photo of each line
+     * are decoded. A last line without line break (a write interrupted by a
+     * crash) is cut off.
+     * @throws IOException 
+     */
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        photoRefs.clear();
+        records = 0;
+        deadRecords = 0;
+        File file = new File(Routes.FILE.getDataFile());
+        if (!file.exists()) {
+            return;
+        }
+        long lineStart = 0;
+        try (InputStream in = new BufferedInputStream(io.count(new FileInputStream(file)))) {
+            ByteArrayOutputStream first = new ByteArrayOutputStream(16);
+            ByteArrayOutputStream nif = new ByteArrayOutputStream(16);
+            ByteArrayOutputStream photo = new ByteArrayOutputStream(72);
+            long offset = 0;
+            int field = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    if (field >= 1) {
+                        String key = nif.toString(StandardCharsets.UTF_8);
+                        records++;
+                        if (Arrays.equals(first.toByteArray(), TOMBSTONE_BYTES)) {
+                            deadRecords++;
+                            if (index.remove(key) != null) {
+                                deadRecords++;
+                            }
+                            photoRefs.remove(key);
+                        } else {
+                            if (index.put(key, lineStart) != null) {
+                                deadRecords++;
+                            }
+                            String reference = photo.toString(StandardCharsets.UTF_8);
+                            if (field >= 6 && !reference.equals("null")) {
+                                photoRefs.put(key, reference);
+                            } else {
+                                photoRefs.remove(key);
+                            }
+                        }
+                    }
+                    first.reset();
+                    nif.reset();
+                    photo.reset();
+                    field = 0;
+                    lineStart = offset + 1;
+                } else if (b == '\t') {
+                    field++;
+                } else if (field == 0) {
+                    first.write(b);
+                } else if (field == 1) {
+                    nif.write(b);
+                } else if (field == 6) {
+                    photo.write(b);
                 }
-                ImageIcon photo = null;
-                if (!data[6].equals("null")) {
-                    photo = new ImageIcon(data[6]);
+                offset++;
+            }
+        }
+        if (lineStart < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(lineStart);
+            }
+        }
+    }
+
+    /**
+     * Reads the line that starts at the given offset of the data file.
+     * @param raf data file opened for reading
+     * @param offset position of the first byte of the line
+     * @return the line without the line break
+     * @throws IOException 
+     */
+    private String readLineAt(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        byte[] buffer = new byte[256];
+        int n;
+        while ((n = raf.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    line.write(buffer, 0, i);
+                    return line.toString(StandardCharsets.UTF_8);
                 }
-                personToRead = new Person(data[0], data[1], data[2], data[3], data[4], date, photo);
-                break;
             }
-            line = br.readLine();
+            line.write(buffer, 0, n);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private Person toPerson(String line) throws ParseException {
+        String data[] = line.split("\t");
+        Date date = null;
+        if (!data[5].equals("null")) {
+            DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd");
+            date = dateFormat.parse(data[5]);
+        }
+        Person p = new Person(data[0], data[1], data[2], data[3], data[4], date, null);
+        if (!data[6].equals("null")) {
+            p.setPhotoSource(photos.loader(data[6]), data[6]);
+        }
+        return p;
+    }
+
+    @Override
+    public synchronized Person read(Person p) throws Exception {
+        Long offset = index.get(p.getNif());
+        if (offset == null) {
+            return null;
+        }
+        try (RandomAccessFile raf = io.open(Routes.FILE.getDataFile(), "r")) {
+            return toPerson(readLineAt(raf, offset));
         }
-        br.close();
-        return personToRead;
     }
     
+    /**
+     * Walks the index from afterNif and reads only the lines of the page.
+     */
     @Override
-    public ArrayList<Person> readAll() throws FileNotFoundException, IOException, ParseException {
-        ArrayList<Person> people = new ArrayList<>();
-        FileReader fr;
-        BufferedReader br;
-        fr = new FileReader(Routes.FILE.getDataFile());
-        br = new BufferedReader(fr);
-        String line;
-        line = br.readLine();
-        while (line != null) {
-            String data[] = line.split("\t");
-            Date date = null;
-            if (!data[5].equals("null")) {
-                DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd");
-                date = dateFormat.parse(data[5]);
+    public synchronized ArrayList<Person> readPage(String afterNif, int limit) throws IOException, ParseException {
+        ArrayList<Person> page = new ArrayList<>(Math.min(limit, index.size()));
+        Map<String, Long> entries = afterNif == null ? index : index.tailMap(afterNif, false);
+        try (RandomAccessFile raf = io.open(Routes.FILE.getDataFile(), "r")) {
+            for (Long offset : entries.values()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(toPerson(readLineAt(raf, offset)));
             }
-            ImageIcon photo = null;
-            if (!data[6].equals("null")) {
-                photo = new ImageIcon(data[6]);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the live lines of the data file, in order of first insertion.
+     * The last version of every record wins and tombstones remove it.
+     * @return NIF -> line
+     * @throws IOException 
+     */
+    private LinkedHashMap<String, String> readLiveLines() throws IOException {
+        LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(io.count(new FileInputStream(Routes.FILE.getDataFile())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String data[] = line.split("\t", 3);
+                if (data.length < 2) {
+                    continue;
+                }
+                if (data[0].equals(TOMBSTONE)) {
+                    lines.remove(data[1]);
+                } else {
+                    lines.put(data[1], line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Scans the mapped data file. Only the live version of every record, the
+     * one the index points to, is turned into a Person.
+     */
+    @Override
+    public synchronized ArrayList<Person> readAll() throws FileNotFoundException, IOException, ParseException {
+        ArrayList<Person> people = new ArrayList<>(index.size());
+        try (MappedRecordScanner scanner = new MappedRecordScanner(Routes.FILE.getDataFile())) {
+            io.read(scanner.length());
+            while (scanner.next()) {
+                if (scanner.fieldCount() < 7 || scanner.fieldEquals(0, TOMBSTONE_BYTES)) {
+                    continue;
+                }
+                String nif = scanner.field(1);
+                Long offset = index.get(nif);
+                if (offset == null || offset != scanner.offset()) {
+                    continue;
+                }
+                Person p = new Person(scanner.field(0), nif, scanner.field(2), scanner.field(3),
+                        scanner.field(4), scanner.date(5), null);
+                if (!scanner.isNull(6)) {
+                    String reference = scanner.field(6);
+                    p.setPhotoSource(photos.loader(reference), reference);
+                }
+                people.add(p);
             }
-            people.add(new Person(data[0], data[1], data[2], data[3], data[4], date, photo));
-            line = br.readLine();
         }
-        br.close();
         return people;
     }
 
+    /**
+     * Reads the data file line by line while the stream is consumed. Like 
+     * readAll(), only the live version of every record is returned. Records 
+     * inserted or updated while the stream is open may or may not be 
+     * returned; if the data file is rewritten (delete in plain mode, 
+     * compaction or deleteAll) the stream fails with a 
+     * ConcurrentModificationException.
+     */
     @Override
-    public void insert(Person p) throws IOException {
-        String sep = File.separator;
-        FileWriter fw;
-        BufferedWriter bw;
-        fw = new FileWriter(Routes.FILE.getDataFile(), true);
-        bw = new BufferedWriter(fw);
+    public Stream<Person> readStream() throws IOException {
+        long expectedGeneration;
+        InputStream in;
+        synchronized (this) {
+            expectedGeneration = generation;
+            in = new BufferedInputStream(io.count(new FileInputStream(Routes.FILE.getDataFile())), 64 * 1024);
+        }
+        Spliterator<Person> lines = new Spliterators.AbstractSpliterator<Person>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            private long offset;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Person> action) {
+                try {
+                    while (readLine(in, line)) {
+                        long lineStart = offset;
+                        offset += line.size() + 1;
+                        String text = line.toString(StandardCharsets.UTF_8);
+                        String data[] = text.split("\t", 3);
+                        if (data.length < 3 || data[0].equals(TOMBSTONE)) {
+                            continue;
+                        }
+                        Long live;
+                        synchronized (DAOFile.this) {
+                            if (generation != expectedGeneration) {
+                                throw new ConcurrentModificationException(Routes.FILE.getDataFile() + " has been rewritten.");
+                            }
+                            live = index.get(data[1]);
+                        }
+                        if (live != null && live == lineStart) {
+                            action.accept(toPerson(text));
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException | ParseException ex) {
+                    throw new UncheckedDAOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(lines, false).onClose(() -> {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                throw new UncheckedDAOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Reads the next complete line of the input without the line break.
+     * @param in
+     * @param line receives the bytes of the line
+     * @return false at the end of the file or if the last line has no line
+     * break (incomplete write)
+     * @throws IOException 
+     */
+    private static boolean readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return true;
+            }
+            line.write(b);
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void insert(Person p) throws IOException {
+        insertAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Appends all the people to the data file through one buffered stream.
+     * The photo of a person already registered (an update in log-structured
+     * mode) replaces the previous one.
+     */
+    @Override
+    public synchronized void insertAll(Collection<Person> people) throws IOException {
+        long offset = new File(Routes.FILE.getDataFile()).length();
+        ArrayList<String> replaced = new ArrayList<>();
+        try (BufferedOutputStream bos = new BufferedOutputStream(io.count(new FileOutputStream(Routes.FILE.getDataFile(), true)))) {
+            for (Person p : people) {
+                String reference = p.getPhoto() != null ? photos.put(p.getPhoto()) : null;
+                byte[] line = toLine(p, reference).getBytes(StandardCharsets.UTF_8);
+                bos.write(line);
+                records++;
+                if (index.put(p.getNif(), offset) != null) {
+                    deadRecords++;
+                }
+                offset += line.length;
+                replaced.add(reference != null ? photoRefs.put(p.getNif(), reference) : photoRefs.remove(p.getNif()));
+            }
+        }
+        for (String reference : replaced) {
+            photos.release(reference);
+        }
+    }
+
+    /**
+     * Builds the line of the data file of a person.
+     * @param p
+     * @param photoReference hash of the stored photo, or null
+     * @return line with the line break
+     */
+    private String toLine(Person p, String photoReference) {
+        StringBuilder line = new StringBuilder(128);
         if (p.getDateOfBirth() != null) {
             DateFormat dateFormat = new SimpleDateFormat("yyy/MM/dd");
             String dateAsString = dateFormat.format(p.getDateOfBirth());
-            bw.write(p.getName() + "\t" + p.getNif() + "\t" + p.getPostalCode()  +"\t" + p.getPhoneNumber() + "\t" + p.getEmail() + "\t"+ dateAsString + "\t");
+            line.append(p.getName() + "\t" + p.getNif() + "\t" + p.getPostalCode()  +"\t" + p.getPhoneNumber() + "\t" + p.getEmail() + "\t"+ dateAsString + "\t");
         } else {
-            bw.write(p.getName() + "\t" + p.getNif() +"\t" + p.getPostalCode() +"\t" + p.getPhoneNumber() +"\t" + p.getEmail()+ "\t" + "null" + "\t");
-        }
-        if (p.getPhoto() != null) {
-            FileOutputStream out;
-            BufferedOutputStream outB;
-            String fileName = Routes.FILE.getFolderPhotos() + sep + p.getNif() + ".png";         
-            out = new FileOutputStream(fileName);
-            outB = new BufferedOutputStream(out);
-            BufferedImage bi = new BufferedImage(p.getPhoto().getImage().getWidth(null),
-                    p.getPhoto().getImage().getHeight(null),
-                    BufferedImage.TYPE_INT_ARGB);
-            bi.getGraphics().drawImage(p.getPhoto().getImage(), 0, 0, null);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bi, "png", baos);
-            baos.flush();
-            byte[] img = baos.toByteArray();
-            baos.close();
-            for (int i = 0; i < img.length; i++) {
-                outB.write(img[i]);
-            }
-            outB.flush();
-            outB.close();
-            bw.write(fileName + "\n");
+            line.append(p.getName() + "\t" + p.getNif() +"\t" + p.getPostalCode() +"\t" + p.getPhoneNumber() +"\t" + p.getEmail()+ "\t" + "null" + "\t");
+        }
+        if (photoReference != null) {
+            line.append(photoReference + "\n");
+        } else {
+            line.append("null" + "\n");
+        }
+        return line.toString();
+    }
+
+    @Override
+    public synchronized void delete(Person p) throws IOException {
+        deleteAll(Collections.singletonList(p.getNif()));
+    }
+
+    /**
+     * Checks the index, the data file is only written if the NIF is new.
+     */
+    @Override
+    public synchronized WriteOutcome insertIfAbsent(Person p) throws IOException {
+        if (index.containsKey(p.getNif())) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        insert(p);
+        return WriteOutcome.INSERTED;
+    }
+
+    /**
+     * Checks the index, the data file is only written if the NIF exists.
+     */
+    @Override
+    public synchronized WriteOutcome deleteIfPresent(Person p) throws IOException {
+        if (!index.containsKey(p.getNif())) {
+            return WriteOutcome.NOT_REGISTERED;
+        }
+        delete(p);
+        return WriteOutcome.DELETED;
+    }
+
+    /**
+     * Deletes the people with a single append of tombstones (log-structured
+     * mode) or a single rewrite of the data file.
+     */
+    @Override
+    public synchronized void deleteAll(Collection<String> nifs) throws IOException {
+        ArrayList<String> references = new ArrayList<>();
+        for (String nif : nifs) {
+            references.add(photoRefs.remove(nif));
+        }
+        if (logStructured) {
+            appendTombstones(nifs);
+            maybeCompact();
         } else {
-            bw.write("null" + "\n");
-        }
-        bw.flush();
-        bw.close();
-    }
-
-    @Override
-    public void delete(Person p) throws IOException {
-        String sep = File.separator;
-        RandomAccessFile rafRW;
-        rafRW = new RandomAccessFile(Routes.FILE.getDataFile(), "rw");
-        String textoNuevo = "";
-        while (rafRW.getFilePointer() < rafRW.length()) {
-            String l = rafRW.readLine();
-            String d[] = l.split("\t");
-            if (p.getNif().equals(d[1])) {
-                if (!d[6].equals("null")) {
-                    File photoFile = new File(Routes.FILE.getFolderPhotos() + sep + p.getNif()
-                            + ".png");
-                    photoFile.delete();
+            rewrite(new HashSet<>(nifs));
+        }
+        for (String reference : references) {
+            photos.release(reference);
+        }
+    }
+
+    /**
+     * Appends a tombstone for every NIF that is registered, the others are
+     * not written.
+     */
+    private void appendTombstones(Collection<String> nifs) throws IOException {
+        ArrayList<String> deleted = new ArrayList<>();
+        for (String nif : nifs) {
+            if (index.remove(nif) != null) {
+                deleted.add(nif);
+            }
+        }
+        if (deleted.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(io.count(new FileOutputStream(Routes.FILE.getDataFile(), true)), StandardCharsets.UTF_8))) {
+            for (String nif : deleted) {
+                bw.write(TOMBSTONE + "\t" + nif + "\n");
+                //The tombstone and the record it deletes
+                records++;
+                deadRecords += 2;
+            }
+        }
+    }
+
+    /**
+     * Writes the live records, except the ones with the given NIFs, into a
+     * temporary file and replaces the data file with it in a single atomic
+     * rename.
+     * @param skipNifs NIFs of the records to leave out
+     * @throws IOException 
+     */
+    private void rewrite(Set<String> skipNifs) throws IOException {
+        Path data = Paths.get(Routes.FILE.getDataFile());
+        Path tmp = Paths.get(Routes.FILE.getDataFile() + ".tmp");
+        LinkedHashMap<String, String> lines = readLiveLines();
+        lines.keySet().removeAll(skipNifs);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(io.count(fos), StandardCharsets.UTF_8))) {
+            for (String line : lines.values()) {
+                bw.write(line);
+                bw.write('\n');
+            }
+            bw.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        rebuildIndex();
+    }
+
+    /**
+     * Schedules a compaction of the data file in a background thread when the
+     * ratio of dead lines reaches the configured limit.
+     */
+    private void maybeCompact() {
+        if (compactionScheduled || records == 0 || (double) deadRecords / records < compactionRatio) {
+            return;
+        }
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "DAOFile-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        compactionScheduled = true;
+        compactor.execute(() -> {
+            synchronized (DAOFile.this) {
+                compactionScheduled = false;
+                try {
+                    if (records > 0 && (double) deadRecords / records >= compactionRatio) {
+                        rewrite(Collections.emptySet());
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error compacting " + Routes.FILE.getDataFile() + ": " + e.getMessage());
                 }
-            } else {
-                textoNuevo += d[0] + "\t" + d[1] + "\t" + d[2] + "\t" + d[3]
-                       + "\t" + d[4] + "\t" + d[5] + "\t" + d[6] + "\n";
             }
+        });
+    }
+
+    /**
+     * Waits until the compaction scheduled, if any, has finished.
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    void awaitCompaction() throws InterruptedException, ExecutionException {
+        ExecutorService current;
+        synchronized (this) {
+            current = compactor;
+        }
+        if (current != null) {
+            //The compactor runs one task at a time, in order
+            current.submit(() -> { }).get();
         }
-        rafRW.setLength(0);
-        rafRW.writeBytes(textoNuevo);
-        rafRW.close();
     }
 
     @Override
-    public void deleteAll() throws IOException {
+    public synchronized void deleteAll() throws IOException {
         File file = new File(Routes.FILE.getDataFile());
         file.delete();
         file.createNewFile();
-        file = new File(Routes.FILE.getFolderPhotos());
-        for(File f : file.listFiles())
-            f.delete();
+        index.clear();
+        records = 0;
+        deadRecords = 0;
+        generation++;
+        photoRefs.clear();
+        photos.deleteAll();
     }
     
     @Override
-    public void update(Person p) throws IOException {
-        delete(p);
-        insert(p);
+    public synchronized void update(Person p) throws IOException {
+        updateAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Appends the new versions in log-structured mode. Otherwise the old
+     * versions are removed in one rewrite and the new ones appended. The old
+     * photos are released after the new ones are stored, so an unchanged 
+     * photo is not written again.
+     */
+    @Override
+    public synchronized void updateAll(Collection<Person> people) throws IOException {
+        ArrayList<String> references = new ArrayList<>();
+        if (!logStructured) {
+            HashSet<String> nifs = new HashSet<>();
+            for (Person p : people) {
+                nifs.add(p.getNif());
+                references.add(photoRefs.get(p.getNif()));
+            }
+            rewrite(nifs);
+        }
+        insertAll(people);
+        for (String reference : references) {
+            photos.release(reference);
+        }
+        if (logStructured) {
+            maybeCompact();
+        }
     }
     
 
     @Override
-    public int count() {
+    public synchronized int count() {
+        if (logStructured) {
+            return index.size();
+        }
         int count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(Routes.FILE.getDataFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    count++;
-                }
-            }
+        try (MappedRecordScanner scanner = new MappedRecordScanner(Routes.FILE.getDataFile())) {
+            io.read(scanner.length());
+            count = scanner.countLines();
         } catch (IOException e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -194,13 +655,14 @@ public class DAOFile implements IDAO {
 
     @Override
     public void exportToCsv() throws Exception {
-        //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
+
+    @Override
+    public IOCounters getIOCounters() {
+        return io;
+    }
 }
@@ -4,6 +4,8 @@ import java.io.EOFException;
 import model.entity.Person;
 import start.Routes;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -11,28 +13,142 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import utils.FileManagement;
 
 /**
  * This class implements the IDAO interface and completes the code of the
  * functions so that they can work with files to store objects. User data is
- * saved in the "dataFileS.ser" file and the associated photos, if any, are
- * saved with the name NIF.png in the "Photos" folder.
+ * saved in the "dataFileS.ser" file. The photo of a person, if any, is
+ * stored inside its record as the bytes of a PNG image written by
+ * Person.writeExternal, so there are no photo files.
+ *
+ * Inserts are appended to the end of the file without reading it: the object
+ * stream is reopened without writing a second stream header. Deletes and 
+ * updates are kept in memory and applied together, in a single rewrite of the
+ * file, when BATCH_SIZE of them are pending, when flush() or close() is
+ * called or when the application ends. Reads see the pending changes.
+ *
+ * This trades durability for fewer rewrites: inserts are on disk when insert
+ * returns, but up to BATCH_SIZE - 1 deletes and updates are only in memory
+ * and are lost if the process is killed or crashes before they are flushed.
+ * A normal exit flushes them through a shutdown hook, which close() removes,
+ * so a DAO that is no longer used must be closed.
+ *
+ * Files written by previous versions, with the default Java serialization of
+ * Person, are rewritten in the current format when the DAO is created.
  *
  * @author Francesc Perez
  * @version 1.1.0
  */
-public class DAOFileSerializable implements IDAO {
+public class DAOFileSerializable implements IDAO, IOCounted {
+
+    public static final int BATCH_SIZE = 64;
+
+    //NIF -> new version of the person, or null if it has been deleted
+    private final LinkedHashMap<String, Person> pending = new LinkedHashMap<>();
+    private final IOCounters io = new IOCounters();
+    //Flushes the pending changes when the application ends, null once closed
+    private Thread shutdownHook;
+
+    public DAOFileSerializable() throws IOException, ClassNotFoundException {
+        migrate();
+        shutdownHook = new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("Error saving pending changes: " + e.getMessage());
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Writes the pending changes and removes the shutdown hook of this DAO.
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    public synchronized void close() throws IOException, ClassNotFoundException {
+        flush();
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                //The application is ending, the hook runs anyway
+            }
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * ObjectOutputStream that continues an existing stream. Instead of the
+     * stream header it writes a reset mark, which ObjectInputStream accepts
+     * in the middle of a stream.
+     */
+    private static class AppendingObjectOutputStream extends ObjectOutputStream {
+
+        AppendingObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+            reset();
+        }
+    }
+
+    /**
+     * Rewrites the data file in the current format if it was written with the
+     * default Java serialization of Person.
+     * @return true if the file has been migrated
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    public synchronized boolean migrate() throws IOException, ClassNotFoundException {
+        File file = new File(Routes.FILES.getDataFile());
+        if (!file.exists() || file.length() == 0) {
+            return false;
+        }
+        boolean legacy;
+        try (PersonInputStream in = new PersonInputStream(new BufferedInputStream(io.count(new FileInputStream(file))))) {
+            in.readObject();
+            legacy = in.isLegacyFormat();
+        } catch (EOFException ex) {
+            return false;
+        }
+        if (legacy) {
+            writeFile(readFile());
+        }
+        return legacy;
+    }
 
     @Override
-    public Person read(Person p) throws IOException, ClassNotFoundException {
+    public synchronized Person read(Person p) throws IOException, ClassNotFoundException {
+        if (pending.containsKey(p.getNif())) {
+            return pending.get(p.getNif());
+        }
         Person personToRead = null;
         FileInputStream fIS = null;
         ObjectInputStream o = null;
         try {
             fIS = new FileInputStream(Routes.FILES.getDataFile());
-            o = new ObjectInputStream(fIS);
+            o = new PersonInputStream(new BufferedInputStream(io.count(fIS)));
             Person pr;
             while ((pr = (Person) o.readObject()) != null) {
                 if (pr.getNif().equals(p.getNif())) {
@@ -57,14 +173,100 @@ public class DAOFileSerializable implements IDAO {
     }
 
     @Override
-    public ArrayList<Person> readAll() throws IOException, ClassNotFoundException {
+    public synchronized ArrayList<Person> readAll() throws IOException, ClassNotFoundException {
+        return applyPending(readFile());
+    }
+
+    /**
+     * Reads the objects one by one while the stream is consumed and applies
+     * the changes that were pending when the stream was opened.
+     */
+    @Override
+    public Stream<Person> readStream() throws IOException {
+        LinkedHashMap<String, Person> changes;
+        synchronized (this) {
+            changes = new LinkedHashMap<>(pending);
+        }
+        File file = new File(Routes.FILES.getDataFile());
+        if (!file.exists() || file.length() == 0) {
+            return changes.values().stream().filter(Objects::nonNull);
+        }
+        ObjectInputStream ois = new PersonInputStream(new BufferedInputStream(io.count(new FileInputStream(file))));
+        Spliterator<Person> objects = new Spliterators.AbstractSpliterator<Person>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private Iterator<Person> notInFile;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Person> action) {
+                try {
+                    while (notInFile == null) {
+                        Person pr;
+                        try {
+                            pr = (Person) ois.readObject();
+                        } catch (EOFException ex) {
+                            //Changes of people that are not in the file go last
+                            notInFile = changes.values().iterator();
+                            break;
+                        }
+                        if (changes.containsKey(pr.getNif())) {
+                            pr = changes.remove(pr.getNif());
+                        }
+                        if (pr != null) {
+                            action.accept(pr);
+                            return true;
+                        }
+                    }
+                    while (notInFile.hasNext()) {
+                        Person changed = notInFile.next();
+                        if (changed != null) {
+                            action.accept(changed);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException | ClassNotFoundException ex) {
+                    throw new UncheckedDAOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(objects, false).onClose(() -> {
+            try {
+                ois.close();
+            } catch (IOException ex) {
+                throw new UncheckedDAOException(ex);
+            }
+        });
+    }
+
+    /**
+     * The file has no index, it is scanned keeping only the people of the 
+     * page.
+     */
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) throws IOException {
+        try (Stream<Person> people = readStream()) {
+            return Pages.select(people.iterator(), afterNif, limit);
+        } catch (UncheckedDAOException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the people stored in the file, without the pending changes.
+     * @return
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    private ArrayList<Person> readFile() throws IOException, ClassNotFoundException {
         ArrayList<Person> people = new ArrayList<>();
         ObjectInputStream ois = null;
         FileInputStream fIS = null;
         try {
             
             fIS = new FileInputStream(Routes.FILES.getDataFile());
-            ois = new ObjectInputStream(fIS);
+            ois = new PersonInputStream(new BufferedInputStream(io.count(fIS)));
             Person pr;
             while ((pr = (Person) ois.readObject()) != null) {
                 people.add(pr);
@@ -86,103 +288,184 @@ public class DAOFileSerializable implements IDAO {
         return people;
     }
 
-    @Override
-    public void delete(Person p) throws IOException, ClassNotFoundException {
-        ArrayList<Person> peopleRead = new ArrayList<>();
-        FileInputStream fIS = null;
-        ObjectInputStream ois = null;
-        try {
-            fIS = new FileInputStream(Routes.FILES.getDataFile());
-            ois = new ObjectInputStream(fIS);
-            Person pr;
-            while ((pr = (Person) ois.readObject()) != null) {
-                if (!pr.getNif().equals(p.getNif())) {
-                    peopleRead.add(pr);
+    /**
+     * Applies the pending deletes and updates to the people read from the 
+     * file.
+     * @param people
+     * @return
+     */
+    private ArrayList<Person> applyPending(ArrayList<Person> people) {
+        if (pending.isEmpty()) {
+            return people;
+        }
+        ArrayList<Person> result = new ArrayList<>(people.size());
+        HashSet<String> seen = new HashSet<>();
+        for (Person pr : people) {
+            if (pending.containsKey(pr.getNif())) {
+                seen.add(pr.getNif());
+                Person changed = pending.get(pr.getNif());
+                if (changed != null) {
+                    result.add(changed);
                 }
+            } else {
+                result.add(pr);
             }
-        } catch (java.io.EOFException ex) {
-            //Do nothing
-//            System.out.println("El archivo está vacío y no se puede crear"
-//                    + "el objeto ObjectInputStream");
-        }finally {
-            if (ois != null) {
-                ois.close();
+        }
+        for (Person changed : pending.values()) {
+            if (changed != null && !seen.contains(changed.getNif())) {
+                result.add(changed);
             }
-            if (fIS != null) {
-                fIS.close();
+        }
+        return result;
+    }
+
+    /**
+     * Rewrites the file with the pending deletes and updates applied. The new
+     * content is written to a temporary file that replaces the data file with
+     * an atomic rename.
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    public synchronized void flush() throws IOException, ClassNotFoundException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        writeFile(applyPending(readFile()));
+        pending.clear();
+    }
+
+    private void writeFile(ArrayList<Person> people) throws IOException {
+        Path data = Paths.get(Routes.FILES.getDataFile());
+        Path tmp = Paths.get(Routes.FILES.getDataFile() + ".tmp");
+        try (FileOutputStream fOS = new FileOutputStream(tmp.toFile());
+                ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(io.count(fOS)))) {
+            for (Person pf : people) {
+                oos.writeObject(pf);
             }
+            oos.flush();
+            fOS.getFD().sync();
         }
-        ObjectOutputStream oos;
-        FileOutputStream fOS;
-        fOS = new FileOutputStream(Routes.FILES.getDataFile());
-        oos = new ObjectOutputStream(fOS);
-        for (Person pf : peopleRead) {
-            oos.writeObject(pf);
+        Files.move(tmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void addPending(String nif, Person p) throws IOException, ClassNotFoundException {
+        pending.put(nif, p);
+        if (pending.size() >= BATCH_SIZE) {
+            flush();
         }
-        oos.flush();
-        oos.close();
     }
 
     @Override
-    public void deleteAll() throws IOException, ClassNotFoundException {
+    public synchronized void delete(Person p) throws IOException, ClassNotFoundException {
+        addPending(p.getNif(), null);
+    }
+
+    /**
+     * The file has no index: the NIF is looked up in the pending changes and
+     * then in the file, stopping at the first match, and the person is 
+     * appended under the same lock.
+     */
+    @Override
+    public synchronized WriteOutcome insertIfAbsent(Person p) throws IOException, ClassNotFoundException {
+        if (read(p) != null) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        insert(p);
+        return WriteOutcome.INSERTED;
+    }
+
+    @Override
+    public synchronized WriteOutcome deleteIfPresent(Person p) throws IOException, ClassNotFoundException {
+        if (read(p) == null) {
+            return WriteOutcome.NOT_REGISTERED;
+        }
+        delete(p);
+        return WriteOutcome.DELETED;
+    }
+
+    @Override
+    public synchronized void deleteAll() throws IOException, ClassNotFoundException {
+        pending.clear();
         File file = new File(Routes.FILES.getDataFile());
         file.delete();
         file.createNewFile();
     }
 
     @Override
-    public void insert(Person p) throws IOException, ClassNotFoundException {
-        ArrayList<Person> personRead = new ArrayList<>();
-        FileInputStream fIS = null;
-        ObjectInputStream ois = null;
-        try {
-            fIS = new FileInputStream(Routes.FILES.getDataFile());
-            ois = new ObjectInputStream(fIS);
-            Person pr;
-            while ((pr = (Person) ois.readObject()) != null) {
-                personRead.add(pr);
-            }
-        } catch (java.io.EOFException ex) {
-            //Do nothing
-//            System.out.println("El archivo está vacío y no se puede crear"
-//                   + "el objeto ObjectInputStream");
-        } finally {
-            if (ois != null) {
-                ois.close();
-            }
-            if (fIS != null) {
-                fIS.close();
+    public synchronized void insert(Person p) throws IOException, ClassNotFoundException {
+        insertAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Appends all the people to the file through one object stream. People
+     * with a pending change replace it instead.
+     */
+    @Override
+    public synchronized void insertAll(Collection<Person> people) throws IOException, ClassNotFoundException {
+        File file = new File(Routes.FILES.getDataFile());
+        boolean newStream = !file.exists() || file.length() == 0;
+        try (FileOutputStream fOS = new FileOutputStream(file, true);
+                ObjectOutputStream oos = newStream
+                        ? new ObjectOutputStream(new BufferedOutputStream(io.count(fOS)))
+                        : new AppendingObjectOutputStream(new BufferedOutputStream(io.count(fOS)))) {
+            for (Person p : people) {
+                if (pending.containsKey(p.getNif())) {
+                    pending.put(p.getNif(), p);
+                } else {
+                    oos.writeObject(p);
+                }
             }
+            oos.flush();
         }
-        ObjectOutputStream oos;
-        FileOutputStream fOS;
-        fOS = new FileOutputStream(Routes.FILES.getDataFile());
-        oos = new ObjectOutputStream(fOS);
-        personRead.add(p);
-        for (Person pf : personRead) {
-            oos.writeObject(pf);
+        if (pending.size() >= BATCH_SIZE) {
+            flush();
         }
-        fOS.flush();
-        oos.flush();
-        oos.close();
-        fOS.close();
     }
 
+    /**
+     * Applies all the updates in a single rewrite of the file.
+     */
     @Override
-    public void update(Person p) throws FileNotFoundException, IOException, ClassNotFoundException{
-        delete(p);
-        insert(p);
+    public synchronized void updateAll(Collection<Person> people) throws IOException, ClassNotFoundException {
+        for (Person p : people) {
+            pending.put(p.getNif(), p);
+        }
+        flush();
+    }
+
+    /**
+     * Applies all the deletes in a single rewrite of the file.
+     */
+    @Override
+    public synchronized void deleteAll(Collection<String> nifs) throws IOException, ClassNotFoundException {
+        for (String nif : nifs) {
+            pending.put(nif, null);
+        }
+        flush();
+    }
+
+    @Override
+    public synchronized void update(Person p) throws FileNotFoundException, IOException, ClassNotFoundException{
+        addPending(p.getNif(), p);
     }
     
     @Override
-    public int count() {
+    public synchronized int count() {
+        if (!pending.isEmpty()) {
+            try (Stream<Person> people = readStream()) {
+                return (int) people.count();
+            } catch (IOException | UncheckedDAOException e) {
+                System.out.println("Error: " + e.getMessage());
+                return 0;
+            }
+        }
         int count = 0;
         ObjectInputStream ois = null;
         FileInputStream fis = null;
 
         try {
             fis = new FileInputStream(Routes.FILES.getDataFile());
-            ois = new ObjectInputStream(fis);
+            ois = new PersonInputStream(new BufferedInputStream(io.count(fis)));
 
             while (true) {
                 try {
@@ -212,13 +495,14 @@ public class DAOFileSerializable implements IDAO {
 
     @Override
     public void exportToCsv() throws Exception {
-        //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
+
+    @Override
+    public IOCounters getIOCounters() {
+        return io;
+    }
 }
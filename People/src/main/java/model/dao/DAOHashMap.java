@@ -2,7 +2,9 @@ package model.dao;
 
 import model.entity.Person;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.stream.Stream;
 import utils.FileManagement;
 
 /**
@@ -32,6 +34,16 @@ public class DAOHashMap implements IDAO {
         people.remove(p.getNif());
     }
     
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) {
+        return people.putIfAbsent(p.getNif(), p) == null ? WriteOutcome.INSERTED : WriteOutcome.ALREADY_REGISTERED;
+    }
+    
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) {
+        return people.remove(p.getNif()) != null ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+    }
+    
     @Override
     public void deleteAll(){
         people.clear();
@@ -41,21 +53,48 @@ public class DAOHashMap implements IDAO {
     public void update(Person p) {
         people.replace(p.getNif(), p);
     }
+    
+    @Override
+    public void insertAll(Collection<Person> newPeople) {
+        for (Person p : newPeople) {
+            people.put(p.getNif(), p);
+        }
+    }
+    
+    @Override
+    public void updateAll(Collection<Person> updatedPeople) {
+        for (Person p : updatedPeople) {
+            people.replace(p.getNif(), p);
+        }
+    }
+    
+    @Override
+    public void deleteAll(Collection<String> nifs) {
+        for (String nif : nifs) {
+            people.remove(nif);
+        }
+    }
 
     @Override
     public ArrayList<Person> readAll() {
         return new ArrayList<>(people.values());
     }
     
+    @Override
+    public Stream<Person> readStream() {
+        return people.values().stream();
+    }
+    
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) {
+        return Pages.select(people.values().iterator(), afterNif, limit);
+    }
+    
     @Override
     public void exportToCsv() throws Exception {
-        //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
 
@@ -0,0 +1,271 @@
+package model.dao;
+
+import model.entity.Person;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.swing.ImageIcon;
+import utils.DataValidation;
+import utils.FileManagement;
+
+/**
+ * This class implements the IDAO interface with a hash table of int keys
+ * for large numbers of people in memory. A valid NIF is 8 digits and a
+ * letter calculated from them, so it is kept as the int of its digits and
+ * the letter is calculated again when it is read. An IntIndex maps every
+ * packed NIF to its row in an array of records instead of a HashMap: there
+ * is no String, Integer or HashMap.Node per person, and the record keeps the
+ * date of birth as a long instead of a Date. A deleted row is filled with
+ * the last one, so the rows are always contiguous.
+ *
+ * NIFs that are not valid (NIE, other formats) go to a HashMap keyed by the
+ * String. read() returns a new Person every time. As DAOHashMap, it is used
+ * by a single thread.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class DAOIntHashMap implements IDAO {
+
+    //Key of a NIF that can not be packed, a packed NIF is never negative
+    private static final int FREE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    //Packed NIF -> row
+    private final IntIndex index = new IntIndex();
+    //Rows 0 to size - 1 are used: packed NIF and record of every row
+    private int[] keys;
+    private Record[] records;
+    private int size;
+    //People whose NIF can not be packed in an int
+    private final HashMap<String, Person> others = new HashMap<>();
+
+    /**
+     * Person without its NIF, which is the key of the row.
+     */
+    private static final class Record {
+
+        private final String name;
+        private final String postalCode;
+        private final String phoneNumber;
+        private final String email;
+        private final long dateOfBirth;
+        private final ImageIcon photo;
+
+        private Record(Person p) {
+            this.name = p.getName();
+            this.postalCode = p.getPostalCode();
+            this.phoneNumber = p.getPhoneNumber();
+            this.email = p.getEmail();
+            this.dateOfBirth = p.getDateOfBirth() != null ? p.getDateOfBirth().getTime() : NO_DATE;
+            this.photo = p.hasPhoto() ? p.getPhoto() : null;
+        }
+
+        private Person toPerson(int key) {
+            return new Person(name, unpack(key), postalCode, phoneNumber, email,
+                    dateOfBirth != NO_DATE ? new Date(dateOfBirth) : null, photo);
+        }
+    }
+
+    public DAOIntHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        index.clear();
+        keys = new int[capacity];
+        records = new Record[capacity];
+        size = 0;
+    }
+
+    /**
+     * @param nif
+     * @return the digits of a valid NIF as an int, FREE if it is not valid
+     */
+    static int pack(String nif) {
+        if (!DataValidation.validNif(nif)) {
+            return FREE;
+        }
+        int number = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = nif.charAt(i);
+            if (c < '0' || c > '9') {
+                return FREE;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * @param key
+     * @return the NIF packed in key
+     */
+    static String unpack(int key) {
+        char[] digits = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            digits[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return DataValidation.calculateNifLetter(new String(digits));
+    }
+
+    private void put(int key, Record record) {
+        int row = index.get(key);
+        if (row == IntIndex.ABSENT) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                records = Arrays.copyOf(records, size * 2);
+            }
+            row = size++;
+            keys[row] = key;
+            index.put(key, row);
+        }
+        records[row] = record;
+    }
+
+    /**
+     * Removes the key and moves the last row to its row.
+     */
+    private boolean remove(int key) {
+        int row = index.remove(key);
+        if (row == IntIndex.ABSENT) {
+            return false;
+        }
+        int last = --size;
+        if (row != last) {
+            keys[row] = keys[last];
+            records[row] = records[last];
+            index.put(keys[row], row);
+        }
+        records[last] = null;
+        return true;
+    }
+
+    @Override
+    public Person read(Person p) {
+        int key = pack(p.getNif());
+        if (key == FREE) {
+            return others.get(p.getNif());
+        }
+        int row = index.get(key);
+        return row != IntIndex.ABSENT ? records[row].toPerson(key) : null;
+    }
+
+    @Override
+    public void insert(Person p) {
+        int key = pack(p.getNif());
+        if (key == FREE) {
+            others.put(p.getNif(), p);
+        } else {
+            put(key, new Record(p));
+        }
+    }
+
+    @Override
+    public void delete(Person p) {
+        deleteIfPresent(p);
+    }
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) {
+        int key = pack(p.getNif());
+        boolean absent = key == FREE ? others.putIfAbsent(p.getNif(), p) == null : index.get(key) == IntIndex.ABSENT;
+        if (!absent) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        if (key != FREE) {
+            put(key, new Record(p));
+        }
+        return WriteOutcome.INSERTED;
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) {
+        int key = pack(p.getNif());
+        boolean deleted = key == FREE ? others.remove(p.getNif()) != null : remove(key);
+        return deleted ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+    }
+
+    @Override
+    public void deleteAll() {
+        allocate(INITIAL_CAPACITY);
+        others.clear();
+    }
+
+    @Override
+    public void update(Person p) {
+        int key = pack(p.getNif());
+        if (key == FREE) {
+            others.replace(p.getNif(), p);
+        } else if (index.get(key) != IntIndex.ABSENT) {
+            put(key, new Record(p));
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<Person> newPeople) {
+        for (Person p : newPeople) {
+            insert(p);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> updatedPeople) {
+        for (Person p : updatedPeople) {
+            update(p);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) {
+        for (String nif : nifs) {
+            int key = pack(nif);
+            if (key == FREE) {
+                others.remove(nif);
+            } else {
+                remove(key);
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Person> readAll() {
+        ArrayList<Person> all = new ArrayList<>(count());
+        readStream().forEach(all::add);
+        return all;
+    }
+
+    /**
+     * The Persons are created while the Stream is consumed.
+     */
+    @Override
+    public Stream<Person> readStream() {
+        int[] k = keys;
+        Record[] r = records;
+        return Stream.concat(IntStream.range(0, size)
+                .mapToObj(i -> r[i].toPerson(k[i])), others.values().stream());
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) {
+        return Pages.select(readStream().iterator(), afterNif, limit);
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
+        }
+    }
+
+    @Override
+    public int count() {
+        return size + others.size();
+    }
+}
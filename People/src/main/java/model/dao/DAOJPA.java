@@ -1,15 +1,22 @@
 package model.dao;
 
 import model.entity.Person;
+import model.entity.PhotoBlob;
 import start.Routes;
 
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import javax.imageio.ImageIO;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -17,6 +24,7 @@ import javax.persistence.Persistence;
 import javax.persistence.TypedQuery;
 import javax.swing.ImageIcon;
 import utils.FileManagement;
+import utils.PhotoStore;
 
 /**
  * This class implements the IDAO interface and completes the function code
@@ -27,23 +35,138 @@ import utils.FileManagement;
  */
 public class DAOJPA implements IDAO {
 
+    //Persisted objects between two flushes of insertAll()
+    private static final int BATCH_SIZE = 1000;
+
+    //Every field but the photo, which is read when it is shown
+    private static final String PROJECTION = "SELECT p.nif, p.name, p.dateOfBirth, p.postalCode, p.phoneNumber, p.email, p.photoHash FROM Person p";
+    private static final String LEGACY_PHOTO_QUERY = "SELECT p.nif FROM Person p WHERE p.photoHash IS NULL AND p.photoOnlyJPA IS NOT NULL";
+
     private EntityManagerFactory emf = Persistence.createEntityManagerFactory(Routes.DBO.getDbServerAddress());
 
-    private byte[] imageIconToBytes(ImageIcon icon) {
-        Image image = icon.getImage();
-        BufferedImage bufferedImage = new BufferedImage(
-                image.getWidth(null),
-                image.getHeight(null),
-                BufferedImage.TYPE_INT_ARGB
-        );
-        bufferedImage.getGraphics().drawImage(image, 0, 0, null);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    /**
+     * Stores the photo as a PhotoBlob, if it is not stored yet, and adds a
+     * reference to it. Must be called inside a transaction.
+     * @return hash of the photo, the key of its PhotoBlob
+     */
+    private String putPhoto(EntityManager em, ImageIcon photo) throws IOException {
+        byte[] png = PhotoStore.toPng(photo);
+        String hash = PhotoStore.hash(png);
+        PhotoBlob blob = em.find(PhotoBlob.class, hash);
+        if (blob == null) {
+            blob = new PhotoBlob(hash, png);
+            em.persist(blob);
+        }
+        blob.setRefs(blob.getRefs() + 1);
+        return hash;
+    }
+
+    /**
+     * Removes a reference to a PhotoBlob and removes the blob if it was the
+     * last one. Must be called inside a transaction.
+     * @param hash null is ignored
+     */
+    private void releasePhoto(EntityManager em, String hash) {
+        if (hash == null) {
+            return;
+        }
+        PhotoBlob blob = em.find(PhotoBlob.class, hash);
+        if (blob != null) {
+            if (blob.getRefs() <= 1) {
+                em.remove(blob);
+            } else {
+                blob.setRefs(blob.getRefs() - 1);
+            }
+        }
+    }
+
+    /**
+     * Replaces the photo of a managed person with the photo of p. A photo
+     * whose reference is the hash already stored is unchanged: it is not
+     * decoded and its blob is not touched. Otherwise the new photo is
+     * referenced before the old one is released.
+     */
+    private void replacePhoto(EntityManager em, Person managed, Person p) throws IOException {
+        String old = managed.getPhotoHash();
+        if (old != null && old.equals(p.getPhotoReference())) {
+            return;
+        }
+        ImageIcon photo = p.getPhoto();
+        managed.setPhotoHash(photo != null ? putPhoto(em, photo) : null);
+        managed.setPhotoOnlyJPA(null);
+        releasePhoto(em, old);
+    }
+
+    /**
+     * Builds a person from a row of the PROJECTION query. The photo is not
+     * read: it is read and decoded when getPhoto() is called.
+     * @param legacy NIFs of the people whose photo is stored in photoOnlyJPA
+     * @param loaders loaders of the photos of the same read, by hash, so a
+     * photo shared by several people is decoded once
+     */
+    private Person toPerson(Object[] row, Set<String> legacy, HashMap<String, Supplier<ImageIcon>> loaders) {
+        String nif = (String) row[0];
+        String hash = (String) row[6];
+        Person p = new Person((String) row[1], nif, (String) row[3], (String) row[4], (String) row[5], (Date) row[2], null);
+        if (hash != null) {
+            p.setPhotoSource(loaders.computeIfAbsent(hash, this::blobLoader), hash);
+        } else if (legacy.contains(nif)) {
+            p.setPhotoSource(() -> readLegacyPhoto(nif));
+        }
+        return p;
+    }
+
+    private Supplier<ImageIcon> blobLoader(String hash) {
+        ImageIcon[] decoded = new ImageIcon[1];
+        return () -> {
+            synchronized (decoded) {
+                if (decoded[0] == null) {
+                    decoded[0] = readBlob(hash);
+                }
+                return decoded[0];
+            }
+        };
+    }
+
+    private ImageIcon readBlob(String hash) {
+        EntityManager em = emf.createEntityManager();
         try {
-            ImageIO.write(bufferedImage, "png", baos);
-        } catch (IOException e) {
-            return null;
+            PhotoBlob blob = em.find(PhotoBlob.class, hash);
+            return blob != null ? bytesToImageIcon(blob.getPng()) : null;
+        } finally {
+            em.close();
         }
-        return baos.toByteArray();
+    }
+
+    private ImageIcon readLegacyPhoto(String nif) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<byte[]> photos = em.createQuery("SELECT p.photoOnlyJPA FROM Person p WHERE p.nif = :nif", byte[].class)
+                    .setParameter("nif", nif)
+                    .getResultList();
+            return !photos.isEmpty() && photos.get(0) != null ? bytesToImageIcon(photos.get(0)) : null;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * @return NIFs of the people whose photo was stored by a previous version
+     * in photoOnlyJPA
+     */
+    private Set<String> legacyPhotoNifs(EntityManager em) {
+        return new HashSet<>(em.createQuery(LEGACY_PHOTO_QUERY, String.class)
+                .getResultList());
+    }
+
+    /**
+     * @return the NIF if the photo of that person was stored by a previous
+     * version in photoOnlyJPA, an empty set otherwise
+     */
+    private Set<String> legacyPhotoNifs(EntityManager em, String nif) {
+        return new HashSet<>(em.createQuery(LEGACY_PHOTO_QUERY + " AND p.nif = :nif", String.class)
+                .setParameter("nif", nif)
+                .getResultList());
     }
 
     private ImageIcon bytesToImageIcon(byte[] imageBytes) {
@@ -65,13 +188,12 @@ public class DAOJPA implements IDAO {
     public Person read(Person p) throws Exception {
         Person personToReturn = null;
         EntityManager em = emf.createEntityManager();
-        String query = "SELECT p FROM Person p WHERE p.nif = :value";
-        List<Person> people = em.createQuery(query, Person.class).setParameter("value", p.getNif()).getResultList();
-        if (!people.isEmpty()) {
-            personToReturn = people.get(0);
-            if (personToReturn.getPhotoOnlyJPA() != null) {
-                personToReturn.setPhoto(bytesToImageIcon(personToReturn.getPhotoOnlyJPA()));
-            }
+        String query = PROJECTION + " WHERE p.nif = :value";
+        List<Object[]> rows = em.createQuery(query, Object[].class).setParameter("value", p.getNif()).getResultList();
+        if (!rows.isEmpty()) {
+            //Only a row without photo hash can have a legacy photo
+            Set<String> legacy = rows.get(0)[6] == null ? legacyPhotoNifs(em, p.getNif()) : Collections.emptySet();
+            personToReturn = toPerson(rows.get(0), legacy, new HashMap<>());
         }
         em.close();
         return personToReturn;
@@ -80,27 +202,125 @@ public class DAOJPA implements IDAO {
     @Override
     public ArrayList<Person> readAll() throws Exception {
         EntityManager em = emf.createEntityManager();
-        String query = "SELECT p FROM Person p";
-        List<Person> people = em.createQuery(query, Person.class).getResultList();
-        for (Person p : people) {
-            if (p.getPhotoOnlyJPA() != null) {
-                p.setPhoto(bytesToImageIcon(p.getPhotoOnlyJPA()));
+        try {
+            List<Object[]> rows = em.createQuery(PROJECTION, Object[].class).getResultList();
+            Set<String> legacy = legacyPhotoNifs(em);
+            HashMap<String, Supplier<ImageIcon>> loaders = new HashMap<>();
+            ArrayList<Person> people = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                people.add(toPerson(row, legacy, loaders));
             }
+            return people;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Streams the query results: ObjectDB fetches the rows lazily while the
+     * stream is consumed. The rows are projections, not managed objects, so
+     * the persistence context does not retain them.
+     */
+    @Override
+    public Stream<Person> readStream() throws Exception {
+        EntityManager em = emf.createEntityManager();
+        HashMap<String, Supplier<ImageIcon>> loaders = new HashMap<>();
+        try {
+            Set<String> legacy = legacyPhotoNifs(em);
+            return em.createQuery(PROJECTION, Object[].class)
+                    .setHint("objectdb.result-fetch", "LAZY")
+                    .getResultStream()
+                    .map(row -> toPerson(row, legacy, loaders))
+                    .onClose(em::close);
+        } catch (RuntimeException ex) {
+            em.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Keyset pagination: the NIF condition replaces the offset, so
+     * setFirstResult is always 0 and ObjectDB does not walk the previous 
+     * pages.
+     */
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Object[]> rows = em.createQuery(PROJECTION + " WHERE p.nif > :after ORDER BY p.nif", Object[].class)
+                    .setParameter("after", afterNif == null ? "" : afterNif)
+                    .setFirstResult(0)
+                    .setMaxResults(limit)
+                    .getResultList();
+            Set<String> legacy = rows.isEmpty() ? Collections.emptySet() : legacyPhotoNifs(em);
+            HashMap<String, Supplier<ImageIcon>> loaders = new HashMap<>();
+            ArrayList<Person> people = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                people.add(toPerson(row, legacy, loaders));
+            }
+            return people;
+        } finally {
+            em.close();
         }
-        em.close();
-        return (ArrayList) people;
     }
 
     @Override
     public void insert(Person p) throws Exception {
+        insertAll(Collections.singletonList(p));
+    }
+
+    /**
+     * Looks the NIF up by primary key and persists the person in the same
+     * transaction.
+     */
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) throws Exception {
         EntityManager em = emf.createEntityManager();
-        if (p.getPhoto() != null) {
-            p.setPhotoOnlyJPA(imageIconToBytes(p.getPhoto()));
+        try {
+            em.getTransaction().begin();
+            if (em.find(Person.class, p.getNif()) != null) {
+                return WriteOutcome.ALREADY_REGISTERED;
+            }
+            if (p.getPhoto() != null) {
+                p.setPhotoHash(putPhoto(em, p.getPhoto()));
+            }
+            em.persist(p);
+            em.getTransaction().commit();
+            return WriteOutcome.INSERTED;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * A single DELETE query, without loading the person. Only the hash of
+     * the photo is read before.
+     */
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<String> hashes = em.createQuery("SELECT p.photoHash FROM Person p WHERE p.nif = :nif", String.class)
+                    .setParameter("nif", p.getNif())
+                    .getResultList();
+            for (String hash : hashes) {
+                releasePhoto(em, hash);
+            }
+            int deleted = em.createQuery("DELETE FROM Person p WHERE p.nif = :nif")
+                    .setParameter("nif", p.getNif())
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return deleted > 0 ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
         }
-        em.getTransaction().begin();
-        em.persist(p);
-        em.getTransaction().commit();
-        em.close();
     }
 
     @Override
@@ -111,15 +331,85 @@ public class DAOJPA implements IDAO {
         if (pC != null) {
             pC.setName(p.getName());
             pC.setDateOfBirth(p.getDateOfBirth());
-            if(p.getPhoto() != null)
-                pC.setPhotoOnlyJPA(imageIconToBytes(p.getPhoto()));
-            else
-                pC.setPhotoOnlyJPA(null);
-            em.getTransaction().commit();
+            replacePhoto(em, pC, p);
         }
+        em.getTransaction().commit();
         em.close();
     }
 
+    /**
+     * Persists all the people in one transaction. The persistence context is
+     * flushed and cleared every BATCH_SIZE people so that it does not keep
+     * all of them in memory.
+     */
+    @Override
+    public void insertAll(Collection<Person> people) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            int n = 0;
+            for (Person p : people) {
+                if (p.getPhoto() != null) {
+                    p.setPhotoHash(putPhoto(em, p.getPhoto()));
+                }
+                em.persist(p);
+                if (++n % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> people) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (Person p : people) {
+                Person pC = em.find(Person.class, p.getNif());
+                if (pC != null) {
+                    pC.setName(p.getName());
+                    pC.setDateOfBirth(p.getDateOfBirth());
+                    replacePhoto(em, pC, p);
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) throws Exception {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (String nif : nifs) {
+                Person pR = em.find(Person.class, nif);
+                if (pR != null) {
+                    releasePhoto(em, pR.getPhotoHash());
+                    em.remove(pR);
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
     @Override
     public void delete(Person p) throws Exception {
         EntityManager em = emf.createEntityManager();
@@ -128,6 +418,7 @@ public class DAOJPA implements IDAO {
         List<Person> personas = query.getResultList();
         em.getTransaction().begin();
         for (Person pR : personas) {
+            releasePhoto(em, pR.getPhotoHash());
             em.remove(pR);
         }
         em.getTransaction().commit();
@@ -142,30 +433,26 @@ public class DAOJPA implements IDAO {
         for (Person pR : personas) {
             em.remove(pR);
         }
+        em.createQuery("DELETE FROM PhotoBlob b").executeUpdate();
         em.getTransaction().commit();
     }
     
     @Override
     public int count() throws Exception{
-        ArrayList<Person> people = new ArrayList<>();
-        people = readAll();
-        int cont = 0;
-        for(Person person : people) {
-            cont ++;
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("SELECT COUNT(p) FROM Person p", Long.class).getSingleResult().intValue();
+        } finally {
+            em.close();
         }
-        return cont;
     }
 
     
     @Override
     public void exportToCsv() throws Exception {
-       //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
 }
@@ -0,0 +1,20 @@
+package model.dao;
+
+import java.util.Map;
+
+/**
+ * Metrics of the storage system published through JMX (jconsole, VisualVM)
+ * by InstrumentedDAO, under the name People:type=DAO,name=BACKEND.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public interface DAOMetricsMXBean {
+    public abstract String getBackend();
+    public abstract long getUptimeSeconds();
+    public abstract Map<String, OperationMetrics> getOperations();
+    public abstract Map<String, Long> getErrorsByType();
+    public abstract long getBytesRead();
+    public abstract long getBytesWritten();
+    public abstract String getReport();
+    public abstract void reset();
+}
@@ -0,0 +1,458 @@
+package model.dao;
+
+import model.entity.Person;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.swing.ImageIcon;
+import utils.FileManagement;
+import utils.PhotoStore;
+
+/**
+ * This class implements the IDAO interface keeping the people outside the
+ * Java heap, for millions of people without the Person, String and Date
+ * objects that the garbage collector would have to go through. Every field
+ * is a column in a direct ByteBuffer with one value per row:
+ *
+ *   NIF            int, packed as in DAOIntHashMap, or text if not valid
+ *   name, phone,
+ *   email, photo   reference (offset and length) to the text buffer, where
+ *                  the Strings are UTF-8 and the photos PNG
+ *   postal code    int, code of a dictionary of the postal codes
+ *   date of birth  long
+ *
+ * The only objects on the heap are the columns, the NIF index (IntIndex,
+ * two int arrays) and the dictionary of postal codes. Persons are created
+ * only by read, readAll, readStream and readPage; their photo is copied but
+ * only decoded when it is shown.
+ *
+ * A delete leaves its row empty and an update leaves the old values in the
+ * text buffer. When more than half of the rows or of the text buffer is not
+ * used, compact() copies the people to new buffers in the same order. As
+ * DAOHashMap, it is used by a single thread.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class DAOOffHeap implements IDAO {
+
+    private static final int INITIAL_ROWS = 1024;
+    private static final int INITIAL_TEXT = 64 * 1024;
+    //Rows or bytes not used below which the buffers are not compacted
+    private static final int MIN_COMPACTION = 1024;
+    //Key of a NIF that is not valid, as returned by DAOIntHashMap.pack
+    private static final int NOT_PACKED = -1;
+    private static final long NULL_REF = -1L;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NO_CODE = -1;
+
+    //Columns, one value per row
+    private ByteBuffer live;
+    private ByteBuffer nifKeys;
+    private ByteBuffer nifRefs;
+    private ByteBuffer names;
+    private ByteBuffer postalCodes;
+    private ByteBuffer phoneNumbers;
+    private ByteBuffer emails;
+    private ByteBuffer dates;
+    private ByteBuffer photos;
+    private ByteBuffer text;
+    private int capacity;
+    private int rows;
+    private int deletedRows;
+    private int textUsed;
+    private long textGarbage;
+
+    //Packed NIF -> row, and NIFs that can not be packed -> row
+    private final IntIndex index = new IntIndex();
+    private final HashMap<String, Integer> others = new HashMap<>();
+    //Dictionary of postal codes, a few thousand at most
+    private final ArrayList<String> codes = new ArrayList<>();
+    private final HashMap<String, Integer> codeIds = new HashMap<>();
+
+    public DAOOffHeap() {
+        allocate(INITIAL_ROWS, INITIAL_TEXT);
+    }
+
+    private void allocate(int rowCapacity, int textCapacity) {
+        capacity = rowCapacity;
+        live = ByteBuffer.allocateDirect(rowCapacity);
+        nifKeys = ByteBuffer.allocateDirect(rowCapacity * Integer.BYTES);
+        nifRefs = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        names = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        postalCodes = ByteBuffer.allocateDirect(rowCapacity * Integer.BYTES);
+        phoneNumbers = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        emails = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        dates = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        photos = ByteBuffer.allocateDirect(rowCapacity * Long.BYTES);
+        text = ByteBuffer.allocateDirect(textCapacity);
+        rows = 0;
+        deletedRows = 0;
+        textUsed = 0;
+        textGarbage = 0;
+    }
+
+    private static ByteBuffer grow(ByteBuffer column, int newCapacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(newCapacity);
+        bigger.put(column.clear());
+        return bigger;
+    }
+
+    private void growRows() throws IOException {
+        if (capacity > Integer.MAX_VALUE / 2 / Long.BYTES) {
+            throw new IOException("Off-heap storage full: " + rows + " rows");
+        }
+        int newCapacity = capacity * 2;
+        live = grow(live, newCapacity);
+        nifKeys = grow(nifKeys, newCapacity * Integer.BYTES);
+        nifRefs = grow(nifRefs, newCapacity * Long.BYTES);
+        names = grow(names, newCapacity * Long.BYTES);
+        postalCodes = grow(postalCodes, newCapacity * Integer.BYTES);
+        phoneNumbers = grow(phoneNumbers, newCapacity * Long.BYTES);
+        emails = grow(emails, newCapacity * Long.BYTES);
+        dates = grow(dates, newCapacity * Long.BYTES);
+        photos = grow(photos, newCapacity * Long.BYTES);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Copies the bytes at the end of the text buffer.
+     * @return reference to them: offset in the high int, length in the low
+     */
+    private long append(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return NULL_REF;
+        }
+        if (textUsed + (long) bytes.length > text.capacity()) {
+            long needed = textUsed + (long) bytes.length;
+            long newCapacity = Math.max(text.capacity() * 2L, needed);
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IOException("Off-heap storage full: " + textUsed + " bytes of text");
+            }
+            text = grow(text, (int) Math.min(newCapacity, Integer.MAX_VALUE - 8));
+        }
+        text.put(textUsed, bytes);
+        long ref = ((long) textUsed << 32) | bytes.length;
+        textUsed += bytes.length;
+        return ref;
+    }
+
+    private long append(String s) throws IOException {
+        return append(s != null ? s.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private byte[] bytes(long ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) ref];
+        text.get((int) (ref >>> 32), bytes);
+        return bytes;
+    }
+
+    private String string(long ref) {
+        return ref == NULL_REF ? null : new String(bytes(ref), StandardCharsets.UTF_8);
+    }
+
+    private static int length(long ref) {
+        return ref == NULL_REF ? 0 : (int) ref;
+    }
+
+    private int code(String postalCode) {
+        if (postalCode == null) {
+            return NO_CODE;
+        }
+        Integer code = codeIds.get(postalCode);
+        if (code == null) {
+            code = codes.size();
+            codes.add(postalCode);
+            codeIds.put(postalCode, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return row of the NIF, or IntIndex.ABSENT
+     */
+    private int row(String nif) {
+        int key = DAOIntHashMap.pack(nif);
+        if (key != NOT_PACKED) {
+            return index.get(key);
+        }
+        Integer row = others.get(nif);
+        return row != null ? row : IntIndex.ABSENT;
+    }
+
+    /**
+     * Writes the fields of the person in the row, the NIF included.
+     */
+    private void write(int row, Person p) throws IOException {
+        int key = DAOIntHashMap.pack(p.getNif());
+        live.put(row, (byte) 1);
+        nifKeys.putInt(row * Integer.BYTES, key);
+        nifRefs.putLong(row * Long.BYTES, key == NOT_PACKED ? append(p.getNif()) : NULL_REF);
+        names.putLong(row * Long.BYTES, append(p.getName()));
+        postalCodes.putInt(row * Integer.BYTES, code(p.getPostalCode()));
+        phoneNumbers.putLong(row * Long.BYTES, append(p.getPhoneNumber()));
+        emails.putLong(row * Long.BYTES, append(p.getEmail()));
+        dates.putLong(row * Long.BYTES, p.getDateOfBirth() != null ? p.getDateOfBirth().getTime() : NO_DATE);
+        photos.putLong(row * Long.BYTES, p.hasPhoto() ? append(PhotoStore.toPng(p.getPhoto())) : NULL_REF);
+    }
+
+    /**
+     * Counts the text of the row as not used, before it is overwritten or
+     * deleted.
+     */
+    private void discard(int row) {
+        textGarbage += length(nifRefs.getLong(row * Long.BYTES)) + length(names.getLong(row * Long.BYTES))
+                + length(phoneNumbers.getLong(row * Long.BYTES)) + length(emails.getLong(row * Long.BYTES))
+                + length(photos.getLong(row * Long.BYTES));
+    }
+
+    private Person person(int row) {
+        int key = nifKeys.getInt(row * Integer.BYTES);
+        String nif = key != NOT_PACKED ? DAOIntHashMap.unpack(key) : string(nifRefs.getLong(row * Long.BYTES));
+        int code = postalCodes.getInt(row * Integer.BYTES);
+        long date = dates.getLong(row * Long.BYTES);
+        Person p = new Person(string(names.getLong(row * Long.BYTES)), nif,
+                code != NO_CODE ? codes.get(code) : null,
+                string(phoneNumbers.getLong(row * Long.BYTES)), string(emails.getLong(row * Long.BYTES)),
+                date != NO_DATE ? new Date(date) : null, null);
+        byte[] png = bytes(photos.getLong(row * Long.BYTES));
+        if (png != null) {
+            p.setPhotoSource(() -> new ImageIcon(png));
+        }
+        return p;
+    }
+
+    @Override
+    public Person read(Person p) {
+        int row = row(p.getNif());
+        return row != IntIndex.ABSENT ? person(row) : null;
+    }
+
+    /**
+     * A person already registered is replaced.
+     * @param p
+     * @throws IOException if the buffers can not grow any more
+     */
+    @Override
+    public void insert(Person p) throws IOException {
+        if (row(p.getNif()) != IntIndex.ABSENT) {
+            update(p);
+        } else {
+            add(p);
+        }
+    }
+
+    private void add(Person p) throws IOException {
+        if (rows == capacity) {
+            growRows();
+        }
+        int row = rows;
+        write(row, p);
+        rows++;
+        int key = DAOIntHashMap.pack(p.getNif());
+        if (key != NOT_PACKED) {
+            index.put(key, row);
+        } else {
+            others.put(p.getNif(), row);
+        }
+    }
+
+    @Override
+    public void delete(Person p) throws IOException {
+        deleteIfPresent(p);
+    }
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) throws IOException {
+        if (row(p.getNif()) != IntIndex.ABSENT) {
+            return WriteOutcome.ALREADY_REGISTERED;
+        }
+        add(p);
+        return WriteOutcome.INSERTED;
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) throws IOException {
+        return remove(p.getNif()) ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED;
+    }
+
+    private boolean remove(String nif) throws IOException {
+        int key = DAOIntHashMap.pack(nif);
+        int row;
+        if (key != NOT_PACKED) {
+            row = index.remove(key);
+        } else {
+            Integer removed = others.remove(nif);
+            row = removed != null ? removed : IntIndex.ABSENT;
+        }
+        if (row == IntIndex.ABSENT) {
+            return false;
+        }
+        discard(row);
+        live.put(row, (byte) 0);
+        deletedRows++;
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public void deleteAll() {
+        allocate(INITIAL_ROWS, INITIAL_TEXT);
+        index.clear();
+        others.clear();
+        codes.clear();
+        codeIds.clear();
+    }
+
+    /**
+     * A person not registered is ignored. The new values are added to the
+     * text buffer, the old ones are left until the next compaction.
+     * @param p
+     * @throws IOException if the buffers can not grow any more
+     */
+    @Override
+    public void update(Person p) throws IOException {
+        int row = row(p.getNif());
+        if (row == IntIndex.ABSENT) {
+            return;
+        }
+        discard(row);
+        write(row, p);
+        compactIfNeeded();
+    }
+
+    @Override
+    public void insertAll(Collection<Person> newPeople) throws IOException {
+        for (Person p : newPeople) {
+            insert(p);
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<Person> updatedPeople) throws IOException {
+        for (Person p : updatedPeople) {
+            update(p);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) throws IOException {
+        for (String nif : nifs) {
+            remove(nif);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if ((deletedRows > MIN_COMPACTION && deletedRows > rows / 2)
+                || (textGarbage > MIN_COMPACTION && textGarbage > textUsed / 2)) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the people registered, in the same order, to new buffers sized
+     * for them, freeing the rows deleted and the text not used. It only goes
+     * through the people once.
+     * @throws IOException if the buffers can not be allocated
+     */
+    public void compact() throws IOException {
+        ByteBuffer oldLive = live, oldNifKeys = nifKeys, oldNifRefs = nifRefs, oldNames = names,
+                oldPostalCodes = postalCodes, oldPhoneNumbers = phoneNumbers, oldEmails = emails,
+                oldDates = dates, oldPhotos = photos, oldText = text;
+        int oldRows = rows;
+        int liveRows = count();
+        int rowCapacity = INITIAL_ROWS;
+        while (rowCapacity < liveRows * 2L && rowCapacity <= Integer.MAX_VALUE / 2 / Long.BYTES) {
+            rowCapacity *= 2;
+        }
+        long textCapacity = Math.max(INITIAL_TEXT, 2 * (textUsed - textGarbage));
+        allocate(rowCapacity, (int) Math.min(textCapacity, Integer.MAX_VALUE - 8));
+        index.clear();
+        others.clear();
+        for (int old = 0; old < oldRows; old++) {
+            if (oldLive.get(old) == 0) {
+                continue;
+            }
+            int row = rows++;
+            int key = oldNifKeys.getInt(old * Integer.BYTES);
+            live.put(row, (byte) 1);
+            nifKeys.putInt(row * Integer.BYTES, key);
+            nifRefs.putLong(row * Long.BYTES, copy(oldText, oldNifRefs.getLong(old * Long.BYTES)));
+            names.putLong(row * Long.BYTES, copy(oldText, oldNames.getLong(old * Long.BYTES)));
+            postalCodes.putInt(row * Integer.BYTES, oldPostalCodes.getInt(old * Integer.BYTES));
+            phoneNumbers.putLong(row * Long.BYTES, copy(oldText, oldPhoneNumbers.getLong(old * Long.BYTES)));
+            emails.putLong(row * Long.BYTES, copy(oldText, oldEmails.getLong(old * Long.BYTES)));
+            dates.putLong(row * Long.BYTES, oldDates.getLong(old * Long.BYTES));
+            photos.putLong(row * Long.BYTES, copy(oldText, oldPhotos.getLong(old * Long.BYTES)));
+            if (key != NOT_PACKED) {
+                index.put(key, row);
+            } else {
+                others.put(string(nifRefs.getLong(row * Long.BYTES)), row);
+            }
+        }
+    }
+
+    /**
+     * Copies text referenced in the old text buffer to the current one.
+     */
+    private long copy(ByteBuffer oldText, long ref) throws IOException {
+        if (ref == NULL_REF) {
+            return NULL_REF;
+        }
+        byte[] bytes = new byte[(int) ref];
+        oldText.get((int) (ref >>> 32), bytes);
+        return append(bytes);
+    }
+
+    @Override
+    public ArrayList<Person> readAll() {
+        ArrayList<Person> all = new ArrayList<>(count());
+        readStream().forEach(all::add);
+        return all;
+    }
+
+    /**
+     * The Persons are created while the Stream is consumed.
+     */
+    @Override
+    public Stream<Person> readStream() {
+        return IntStream.range(0, rows)
+                .filter(row -> live.get(row) != 0)
+                .mapToObj(this::person);
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) {
+        return Pages.select(readStream().iterator(), afterNif, limit);
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
+        }
+    }
+
+    @Override
+    public int count() {
+        return rows - deletedRows;
+    }
+
+    /**
+     * @return bytes of the direct buffers, outside the Java heap
+     */
+    public long getOffHeapBytes() {
+        return live.capacity() + (long) nifKeys.capacity() + nifRefs.capacity() + names.capacity()
+                + postalCodes.capacity() + phoneNumbers.capacity() + emails.capacity()
+                + dates.capacity() + photos.capacity() + text.capacity();
+    }
+}
@@ -3,24 +3,26 @@ package model.dao;
 import model.entity.Person;
 import start.Routes;
 
-import java.awt.image.BufferedImage;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.Date;
-import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
 import utils.FileManagement;
+import utils.PhotoStore;
 
 /**
  * This class implements the IDAO interface and completes the function code
@@ -32,103 +34,282 @@ import utils.FileManagement;
  */
 public class DAOSQL implements IDAO {
 
+    //Rows sent to the server in every executeBatch()
+    private static final int BATCH_SIZE = 1000;
+    //Rows brought from the server in every round trip of readStream()
+    private static final int FETCH_SIZE = 500;
+    //MySQL error code of a duplicate primary key
+    private static final int ER_DUP_ENTRY = 1062;
+    //SQLState of a duplicate primary key in H2 (MODE=MySQL), used by the benchmarks
+    private static final String DUPLICATE_KEY = "23505";
+
+    private final PhotoStore photos = new PhotoStore(Routes.DB.getFolderPhotos());
+
     private final String SQL_SELECT_ALL = "SELECT * FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + ";";
+    private final String SQL_SELECT_PAGE = "SELECT * FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (nif > ?) ORDER BY nif LIMIT ?;";
     private final String SQL_SELECT = "SELECT * FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (nif = ?);";
     private final String SQL_INSERT = "INSERT INTO " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " (nif, name, postalCode, phoneNumber, email, dateOfBirth, photo) VALUES (?, ?, ?, ?, ?, ?, ?);";
     private final String SQL_UPDATE = "UPDATE " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " SET name = ?, postalCode = ? , phoneNumber = ?, email = ?, dateOfBirth = ?, photo = ? WHERE (nif = ?);";
-    private final String SQL_DELETE = "DELETE FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (nif = ";
-    private final String SQL_DELETE_ALL = "TRUNCATE " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE();
+    private final String SQL_DELETE_NIF = "DELETE FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (nif = ?);";
+    private final String SQL_DELETE_ALL = "TRUNCATE TABLE " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE();
+    private final String SQL_SELECT_PHOTO = "SELECT photo FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (nif = ?);";
+    private final String SQL_SELECT_PHOTOS = "SELECT photo FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (photo IS NOT NULL);";
+    private final String SQL_SELECT_PHOTOS_IN = "SELECT photo FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + " WHERE (photo IS NOT NULL AND nif IN (";
+
+    /**
+     * Counts the references of the registered people to their photos and 
+     * deletes the photos that nobody references.
+     * @throws SQLException
+     * @throws IOException 
+     */
+    public DAOSQL() throws SQLException, IOException {
+        ArrayList<String> references = new ArrayList<>();
+        try (Connection conn = connect();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(SQL_SELECT_PHOTOS)) {
+            while (rs.next()) {
+                references.add(rs.getString("photo"));
+            }
+        }
+        photos.recount(references);
+    }
 
+    /**
+     * Borrows a connection from the pool shared with the login.
+     * @return connection that must be given back with disconnect() or by
+     * closing it
+     * @throws SQLException
+     */
     public Connection connect() throws SQLException {
-        Connection conn;
-        conn = DriverManager.getConnection(Routes.DB.getDbServerAddress() + Routes.DB.getDbServerComOpt(), Routes.DB.getDbServerUser(), Routes.DB.getDbServerPassword());
-        return conn;
+        return ConnectionPool.get(Routes.DB).getConnection();
     }
 
+    /**
+     * Gives the connection back to the pool.
+     * @param conn
+     * @throws SQLException
+     */
     public void disconnect(Connection conn) throws SQLException {
         conn.close();
     }
 
+    private Person toPerson(ResultSet rs) throws SQLException {
+        String nif = rs.getString("nif");
+        String name = rs.getString("name");
+        String postalCode = rs.getString("postalCode");
+        String phoneNumber = rs.getString("phoneNumber");
+        String email = rs.getString("email");
+        Date date = rs.getDate("dateOfBirth");
+        String photo = rs.getString("photo");
+        Person p = new Person(name, nif, postalCode, phoneNumber, email, date, null);
+        if (photo != null) {
+            //Only the hash is read, the photo is loaded if it is shown
+            p.setPhotoSource(photos.loader(photo), photo);
+        }
+        return p;
+    }
+
     @Override
     public Person read(Person p) throws SQLException {
         Person pReturn = null;
-        Connection conn;
-        PreparedStatement instruction;
-        ResultSet rs;
-        conn = connect();
-        instruction = conn.prepareStatement(SQL_SELECT);
-        instruction.setString(1, p.getNif());
-        rs = instruction.executeQuery();
-        while (rs.next()) {
-            String nif = rs.getString("nif");
-            String name = rs.getString("name");
-            String postalCode = rs.getString("postalCode");
-            String phoneNumber = rs.getString("phoneNumber");
-            String email = rs.getString("email");
-            pReturn = new Person(name, nif, postalCode, phoneNumber, email);
-            Date date = rs.getDate("dateOfBirth");
-            if (date != null) {
-                pReturn.setDateOfBirth(date);
-            }
-            String photo = rs.getString("photo");
-            if (photo != null) {
-                pReturn.setPhoto(new ImageIcon(photo));
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_SELECT)) {
+            instruction.setString(1, p.getNif());
+            try (ResultSet rs = instruction.executeQuery()) {
+                while (rs.next()) {
+                    pReturn = toPerson(rs);
+                }
             }
         }
-        rs.close();
-        instruction.close();
-        disconnect(conn);
         return pReturn;
     }
 
     @Override
     public ArrayList<Person> readAll() throws SQLException{
         ArrayList<Person> people = new ArrayList<>();
-        Connection conn;
-        Statement instruction;
-        ResultSet rs;
-        conn = connect();
-        instruction = conn.createStatement();
-        rs = instruction.executeQuery(SQL_SELECT_ALL);
-        while (rs.next()) {
-            String nif = rs.getString("nif");
-            String name = rs.getString("name");
-            String postalCode = rs.getString("postalCode");
-            String phoneNumber = rs.getString("phoneNumber");
-            String email = rs.getString("email");
-            Date date = rs.getDate("dateOfBirth");
-            String photo = rs.getString("photo");
-            if (photo != null) {
-                people.add(new Person(nif, name,postalCode, phoneNumber, email, date, new ImageIcon(photo)));
-            } else {
-                people.add(new Person(nif, name,postalCode, phoneNumber, email, date, null));
+        try (Connection conn = connect();
+                Statement instruction = conn.createStatement();
+                ResultSet rs = instruction.executeQuery(SQL_SELECT_ALL)) {
+            while (rs.next()) {
+                people.add(toPerson(rs));
             }
         }
-        rs.close();
-        instruction.close();
-        disconnect(conn);
         return people;
     }
+
+    /**
+     * Keyset pagination over the primary key: the server jumps to afterNif in
+     * the index instead of skipping the rows of the previous pages.
+     */
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) throws SQLException {
+        ArrayList<Person> people = new ArrayList<>();
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_SELECT_PAGE)) {
+            instruction.setString(1, afterNif == null ? "" : afterNif);
+            instruction.setInt(2, limit);
+            try (ResultSet rs = instruction.executeQuery()) {
+                while (rs.next()) {
+                    people.add(toPerson(rs));
+                }
+            }
+        }
+        return people;
+    }
+
+    /**
+     * Reads the table through a forward-only cursor that brings FETCH_SIZE 
+     * rows from the server at a time (useCursorFetch in Routes.DB). The 
+     * connection goes back to the pool when the stream is closed.
+     */
+    @Override
+    public Stream<Person> readStream() throws SQLException {
+        Connection conn = connect();
+        PreparedStatement instruction = null;
+        ResultSet rs;
+        try {
+            instruction = conn.prepareStatement(SQL_SELECT_ALL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            instruction.setFetchSize(FETCH_SIZE);
+            rs = instruction.executeQuery();
+        } catch (SQLException ex) {
+            if (instruction != null) {
+                instruction.close();
+            }
+            conn.close();
+            throw ex;
+        }
+        PreparedStatement statement = instruction;
+        Spliterator<Person> rows = new Spliterators.AbstractSpliterator<Person>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Person> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(toPerson(rs));
+                    return true;
+                } catch (SQLException ex) {
+                    throw new UncheckedDAOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try (Connection c = conn; PreparedStatement st = statement; ResultSet r = rs) {
+                //Closed in reverse order
+            } catch (SQLException ex) {
+                throw new UncheckedDAOException(ex);
+            }
+        });
+    }
+
     @Override
-    public void delete(Person p) throws SQLException {
-        Connection conn;
-        PreparedStatement instruction;
-        conn = connect();
-        String query = SQL_DELETE + "'" + p.getNif() + "'" + ");";
-        instruction = conn.prepareStatement(query);
-        instruction.executeUpdate();
-        instruction.close();
-        disconnect(conn);
-        File photoFile = new File(Routes.DB.getFolderPhotos() + File.separator + p.getNif()
-                + ".png");
-        photoFile.delete();
+    public void delete(Person p) throws IOException, SQLException {
+        String photo;
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_DELETE_NIF)) {
+            photo = readPhoto(conn, p.getNif());
+            instruction.setString(1, p.getNif());
+            instruction.executeUpdate();
+        }
+        photos.release(photo);
+    }
+
+    /**
+     * @return reference to the photo of the person, null if the person has no
+     * photo or is not registered
+     */
+    private String readPhoto(Connection conn, String nif) throws SQLException {
+        try (PreparedStatement instruction = conn.prepareStatement(SQL_SELECT_PHOTO)) {
+            instruction.setString(1, nif);
+            try (ResultSet rs = instruction.executeQuery()) {
+                return rs.next() ? rs.getString("photo") : null;
+            }
+        }
+    }
+
+    /**
+     * @return references to the photos of the people, chunk by chunk with an
+     * IN list of up to BATCH_SIZE NIFs
+     */
+    private ArrayList<String> readPhotos(Connection conn, Collection<String> nifs) throws SQLException {
+        ArrayList<String> references = new ArrayList<>();
+        ArrayList<String> all = new ArrayList<>(nifs);
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            List<String> chunk = all.subList(from, Math.min(from + BATCH_SIZE, all.size()));
+            String sql = SQL_SELECT_PHOTOS_IN + String.join(", ", Collections.nCopies(chunk.size(), "?")) + "));";
+            try (PreparedStatement instruction = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    instruction.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = instruction.executeQuery()) {
+                    while (rs.next()) {
+                        references.add(rs.getString("photo"));
+                    }
+                }
+            }
+        }
+        return references;
+    }
+
+    private void release(Collection<String> references) throws IOException {
+        for (String reference : references) {
+            photos.release(reference);
+        }
     }
     @Override
     public void insert(Person p) throws IOException, SQLException {
-        Connection conn;
-        PreparedStatement instruction;
-        conn = connect();
-        instruction = conn.prepareStatement(SQL_INSERT);
+        insertAll(Collections.singletonList(p));
+    }
+
+    /**
+     * A single INSERT: the primary key rejects a registered NIF, so there is
+     * no previous SELECT. The reference taken to the photo is given back if
+     * the insert is rejected.
+     */
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) throws IOException, SQLException {
+        String photo = p.getPhoto() != null ? photos.put(p.getPhoto()) : null;
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_INSERT)) {
+            bindRow(instruction, p, photo);
+            instruction.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            photos.release(photo);
+            if (ex.getErrorCode() == ER_DUP_ENTRY || DUPLICATE_KEY.equals(ex.getSQLState())) {
+                return WriteOutcome.ALREADY_REGISTERED;
+            }
+            throw ex;
+        } catch (SQLException ex) {
+            photos.release(photo);
+            throw ex;
+        }
+        return WriteOutcome.INSERTED;
+    }
+
+    /**
+     * The photo is read first, then a single DELETE whose number of rows 
+     * deleted tells whether the NIF was registered.
+     */
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) throws IOException, SQLException {
+        String photo;
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_DELETE_NIF)) {
+            photo = readPhoto(conn, p.getNif());
+            instruction.setString(1, p.getNif());
+            if (instruction.executeUpdate() == 0) {
+                return WriteOutcome.NOT_REGISTERED;
+            }
+        }
+        photos.release(photo);
+        return WriteOutcome.DELETED;
+    }
+
+    /**
+     * Binds the values of SQL_INSERT.
+     * @param photo hash of the photo already stored, or null
+     */
+    private void bindRow(PreparedStatement instruction, Person p, String photo) throws SQLException {
         instruction.setString(1, p.getNif());
         instruction.setString(2, p.getName());
         instruction.setString(3, p.getPostalCode());
@@ -139,40 +320,15 @@ public class DAOSQL implements IDAO {
         } else {
             instruction.setDate(6, null);
         }
-        if (p.getPhoto() != null) {
-            String sep = File.separator;
-            String filePath = Routes.DB.getFolderPhotos() + sep + p.getNif() + ".png";
-            File photo = new File(filePath);
-            FileOutputStream out;
-            BufferedOutputStream outB;
-            out = new FileOutputStream(photo);
-            outB = new BufferedOutputStream(out);
-            BufferedImage bi = new BufferedImage(p.getPhoto().getImage().getWidth(null),
-                    p.getPhoto().getImage().getHeight(null),
-                    BufferedImage.TYPE_INT_ARGB);
-            bi.getGraphics().drawImage(p.getPhoto().getImage(), 0, 0, null);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bi, "png", baos);
-            byte[] img = baos.toByteArray();
-            for (int i = 0; i < img.length; i++) {
-                outB.write(img[i]);
-            }
-            outB.close();
-            instruction.setString(7, photo.getPath());
-        } else {
-            instruction.setString(7, null);
-        }
-        instruction.executeUpdate();
-        instruction.close();
-        disconnect(conn);
+        instruction.setString(7, photo);
     }
 
     @Override
     public void update(Person p) throws FileNotFoundException, SQLException, IOException {
-        Connection conn;
-        PreparedStatement instruction;
-        conn = connect();
-        instruction = conn.prepareStatement(SQL_UPDATE);
+        updateAll(Collections.singletonList(p));
+    }
+
+    private void bindUpdate(PreparedStatement instruction, Person p, String photo) throws SQLException {
         instruction.setString(1, p.getName());
         instruction.setString(2, p.getPostalCode());
         instruction.setString(3, p.getPhoneNumber());
@@ -182,75 +338,135 @@ public class DAOSQL implements IDAO {
         } else {
             instruction.setDate(5, null);
         }
-        if (p.getPhoto() != null) {
-            String sep = File.separator;
-            File imagePerson = new File(Routes.DB.getFolderPhotos() + sep + p.getNif() + ".png");
-            FileOutputStream out;
-            BufferedOutputStream outB;
-            out = new FileOutputStream(imagePerson);
-            outB = new BufferedOutputStream(out);
-            BufferedImage bi = new BufferedImage(p.getPhoto().getImage().getWidth(null),
-                    p.getPhoto().getImage().getHeight(null),
-                    BufferedImage.TYPE_INT_ARGB);
-            bi.getGraphics().drawImage(p.getPhoto().getImage(), 0, 0, null);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bi, "png", baos);
-            byte[] img = baos.toByteArray();
-            for (int i = 0; i < img.length; i++) {
-                outB.write(img[i]);
+        instruction.setString(6, photo);
+        instruction.setString(7, p.getNif());
+    }
+
+    @Override
+    public void insertAll(Collection<Person> people) throws IOException, SQLException {
+        ArrayList<String> stored = new ArrayList<>();
+        try {
+            executeBatch(SQL_INSERT, people, (instruction, p) -> bindRow(instruction, p, put(p, stored)));
+        } catch (IOException | SQLException | RuntimeException ex) {
+            //The rows were rolled back
+            release(stored);
+            throw ex;
+        }
+    }
+
+    /**
+     * Stores the photo of the person, if any.
+     * @param stored hashes stored so far, given back if the batch fails
+     * @return hash of the photo or null
+     */
+    private String put(Person p, ArrayList<String> stored) throws IOException {
+        if (p.getPhoto() == null) {
+            return null;
+        }
+        String hash = photos.put(p.getPhoto());
+        stored.add(hash);
+        return hash;
+    }
+
+    @Override
+    public void updateAll(Collection<Person> people) throws IOException, SQLException {
+        //The photos are released once the new ones are referenced, so an
+        //unchanged photo is neither deleted nor written again
+        ArrayList<String> nifs = new ArrayList<>(people.size());
+        for (Person p : people) {
+            nifs.add(p.getNif());
+        }
+        ArrayList<String> replaced;
+        try (Connection conn = connect()) {
+            replaced = readPhotos(conn, nifs);
+        }
+        ArrayList<String> stored = new ArrayList<>();
+        try {
+            executeBatch(SQL_UPDATE, people, (instruction, p) -> bindUpdate(instruction, p, put(p, stored)));
+        } catch (IOException | SQLException | RuntimeException ex) {
+            release(stored);
+            throw ex;
+        }
+        release(replaced);
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) throws IOException, SQLException {
+        ArrayList<String> deleted;
+        try (Connection conn = connect()) {
+            deleted = readPhotos(conn, nifs);
+        }
+        executeBatch(SQL_DELETE_NIF, nifs, (instruction, nif) -> instruction.setString(1, nif));
+        release(deleted);
+    }
+
+    private interface Binder<T> {
+        void bind(PreparedStatement instruction, T value) throws IOException, SQLException;
+    }
+
+    /**
+     * Sends the statement once per value with addBatch/executeBatch, in a 
+     * single transaction: either all the rows are written or none. With 
+     * rewriteBatchedStatements (Routes.DB) the driver sends every chunk of 
+     * inserts as one multi-row INSERT.
+     * @param sql statement
+     * @param values values bound to each execution
+     * @param binder sets the parameters of the statement
+     * @throws IOException
+     * @throws SQLException 
+     */
+    private <T> void executeBatch(String sql, Collection<T> values, Binder<T> binder) throws IOException, SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            try {
+                int pending = 0;
+                for (T value : values) {
+                    binder.bind(instruction, value);
+                    instruction.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        instruction.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    instruction.executeBatch();
+                }
+                conn.commit();
+            } catch (IOException | SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
             }
-            outB.close();
-            instruction.setString(6, imagePerson.getPath());
-        } else {
-            instruction.setString(6, null);
-            File photoFile = new File(Routes.DB.getFolderPhotos() + File.separator + p.getNif()
-                    + ".png");
-            photoFile.delete();
         }
-        instruction.setString(7, p.getNif());
-        instruction.executeUpdate();
-        instruction.close();
-        disconnect(conn);
     }
+
     @Override
     public void deleteAll() throws Exception {
-        Connection conn;
-        PreparedStatement instruction;
-        conn = connect();
-        instruction = conn.prepareStatement(SQL_DELETE_ALL);
-        System.out.println(SQL_DELETE_ALL);
-        instruction.executeUpdate();
-        instruction.close();
-        disconnect(conn);
-        File file = new File(Routes.DB.getFolderPhotos() + File.separator);
-        for(File f : file.listFiles())
-            f.delete();
+        try (Connection conn = connect();
+                PreparedStatement instruction = conn.prepareStatement(SQL_DELETE_ALL)) {
+            System.out.println(SQL_DELETE_ALL);
+            instruction.executeUpdate();
+        }
+        photos.deleteAll();
     }
     
     @Override
     public int count() {
         int total = 0;
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        try {
-            conn = connect();
-            stmt = conn.createStatement();
-            String sql = "SELECT COUNT(*) AS total FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE();
-            rs = stmt.executeQuery(sql);
+        String sql = "SELECT COUNT(*) AS total FROM " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE();
+        try (Connection conn = connect();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
                 total = rs.getInt("total");
             }
         } catch (SQLException e) {
             System.out.println("Error en count(): " + e.getMessage());
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-                if (conn != null) disconnect(conn);
-            } catch (SQLException e) {
-                System.out.println("Error al cerrar recursos en count(): " + e.getMessage());
-            }
         }
         return total;
     }
@@ -258,13 +474,9 @@ public class DAOSQL implements IDAO {
 
     @Override
     public void exportToCsv() throws Exception {
-        //retrieve the file data
-        ArrayList<Person> people = this.readAll();
-        //insert the people into csv 
-        for(Person p:people){
-            String csv = p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.getPhoto();
-            FileManagement fm = new FileManagement();
-            fm.fileWriter(csv);
+        //stream the data into the csv, one person at a time
+        try (Stream<Person> people = this.readStream()) {
+            new FileManagement().exportToCsv(people);
         }
     }
 }
@@ -2,6 +2,8 @@ package model.dao;
 
 import model.entity.Person;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.stream.Stream;
 
 /**
  * This interface defines the operations that will have to be performed on the 
@@ -31,6 +33,29 @@ public interface IDAO {
      */
     public abstract ArrayList<Person> readAll() throws Exception;
     
+    /**
+     * This function returns all registered persons as a Stream that reads 
+     * them from the storage system while it is consumed, so only the persons 
+     * being processed are in memory. The Stream keeps the file or connection
+     * open and must be closed (try-with-resources). Errors while it is 
+     * consumed are thrown as UncheckedDAOException.
+     * @return Stream<> of persons
+     * @throws java.lang.Exception
+     */
+    public abstract Stream<Person> readStream() throws Exception;
+    
+    /**
+     * This function returns a page of the registered persons ordered by NIF:
+     * the first persons whose NIF is greater than afterNif. The next page is 
+     * read passing the NIF of the last person of the current one.
+     * @param afterNif NIF of the last person of the previous page, or null 
+     * for the first page
+     * @param limit maximum number of persons of the page
+     * @return ArrayList<> with up to limit persons, empty after the last page
+     * @throws java.lang.Exception
+     */
+    public abstract ArrayList<Person> readPage(String afterNif, int limit) throws Exception;
+    
     /**
      * This function receives the person who must enter the storage system and 
      * store it into the ArrayList, if it is not possible generates a 
@@ -58,6 +83,51 @@ public interface IDAO {
      */
     public abstract void delete (Person p) throws Exception;
     
+    /**
+     * This function inserts the person only if its NIF is not registered. The
+     * check and the insert are a single operation of the storage system, so 
+     * no other insert of the same NIF can happen in between.
+     * @param p Person
+     * @return INSERTED or ALREADY_REGISTERED
+     * @throws java.lang.Exception
+     */
+    public abstract WriteOutcome insertIfAbsent(Person p) throws Exception;
+    
+    /**
+     * This function deletes the person (NIF) only if it is registered, in a 
+     * single operation of the storage system.
+     * @param p Person
+     * @return DELETED or NOT_REGISTERED
+     * @throws java.lang.Exception
+     */
+    public abstract WriteOutcome deleteIfPresent(Person p) throws Exception;
+    
+    /**
+     * This function stores all the people received in a single operation of 
+     * the storage system (one transaction, one write of the file...) instead 
+     * of one operation per person.
+     * @param people Collection of new people
+     * @throws java.lang.Exception
+     */
+    public abstract void insertAll (Collection<Person> people) throws Exception;
+    
+    /**
+     * This function enters the updated data of all the people received in a 
+     * single operation of the storage system.
+     * @param people Collection of people with the updated data
+     * @throws java.lang.Exception
+     */
+    public abstract void updateAll (Collection<Person> people) throws Exception;
+    
+    /**
+     * This function deletes from the storage system, in a single operation, 
+     * the people whose NIF is received. NIFs that are not registered are 
+     * ignored.
+     * @param nifs Collection of NIFs
+     * @throws java.lang.Exception
+     */
+    public abstract void deleteAll (Collection<String> nifs) throws Exception;
+    
      /**
      * This function deletes all people registered in the application.
      * @throws java.lang.Exception
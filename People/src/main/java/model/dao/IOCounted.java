@@ -0,0 +1,11 @@
+package model.dao;
+
+/**
+ * Implemented by the DAOs that count the bytes read from and written to
+ * their data file.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public interface IOCounted {
+    public abstract IOCounters getIOCounters();
+}
@@ -0,0 +1,165 @@
+package model.dao;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes read from and written to the data file of a file DAO. The streams
+ * and RandomAccessFiles that the DAO opens on its data file are wrapped or
+ * created by this class, which counts the bytes that go through them. The
+ * photos are not counted.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class IOCounters {
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Counts bytes read without a stream, e.g. through a MappedByteBuffer.
+     * @param n
+     */
+    public void read(long n) {
+        bytesRead.add(n);
+    }
+
+    /**
+     * @param in
+     * @return stream that counts the bytes read from in
+     */
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    bytesRead.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    bytesRead.add(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                bytesRead.add(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * @param out
+     * @return stream that counts the bytes written to out
+     */
+    public OutputStream count(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesWritten.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesWritten.add(len);
+            }
+        };
+    }
+
+    /**
+     * @param file
+     * @param mode as in RandomAccessFile
+     * @return RandomAccessFile that counts the bytes read and written
+     * @throws FileNotFoundException
+     */
+    public RandomAccessFile open(File file, String mode) throws FileNotFoundException {
+        return new CountingRandomAccessFile(file, mode);
+    }
+
+    /**
+     * @param path
+     * @param mode as in RandomAccessFile
+     * @return RandomAccessFile that counts the bytes read and written
+     * @throws FileNotFoundException
+     */
+    public RandomAccessFile open(String path, String mode) throws FileNotFoundException {
+        return new CountingRandomAccessFile(new File(path), mode);
+    }
+
+    /**
+     * All the reads and writes of RandomAccessFile, including readInt,
+     * readFully, writeInt..., go through these methods.
+     */
+    private class CountingRandomAccessFile extends RandomAccessFile {
+
+        CountingRandomAccessFile(File file, String mode) throws FileNotFoundException {
+            super(file, mode);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bytesRead.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytesRead.add(n);
+            }
+            return n;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            super.write(b);
+            bytesWritten.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            bytesWritten.add(len);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+    }
+}
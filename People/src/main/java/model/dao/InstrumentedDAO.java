@@ -0,0 +1,371 @@
+package model.dao;
+
+import model.entity.Person;
+import utils.LatencyHistogram;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class implements the IDAO interface on top of another IDAO and
+ * measures every operation: number of calls and calls per second, latency
+ * percentiles (p50, p99, p999) and errors, by operation and by type of
+ * exception. If the storage system is IOCounted the bytes read from and
+ * written to its data file are reported too.
+ *
+ * The metrics are published through JMX under the name
+ * People:type=DAO,name=BACKEND and, if dumpSeconds is not 0, printed every
+ * dumpSeconds seconds. A readStream lasts from the call until the Stream is
+ * closed.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class InstrumentedDAO implements IDAO, DAOMetricsMXBean {
+
+    private static final String[] OPERATIONS = {"read", "readAll", "readStream",
+        "readPage", "insert", "update", "delete", "insertIfAbsent", "deleteIfPresent",
+        "insertAll", "updateAll", "deleteAllNifs", "deleteAll", "count", "exportToCsv"};
+
+    private final IDAO dao;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private volatile long start = System.nanoTime();
+    private ObjectName name;
+    private ScheduledExecutorService dump;
+
+    /**
+     * Registers the metrics in the platform MBeanServer.
+     * @param dao storage system
+     * @param dumpSeconds seconds between two prints of the report, 0 to not
+     * print it
+     */
+    public InstrumentedDAO(IDAO dao, long dumpSeconds) {
+        this.dao = dao;
+        for (String operation : OPERATIONS) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new LongAdder());
+        }
+        register();
+        if (dumpSeconds > 0) {
+            dump = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DAO metrics");
+                t.setDaemon(true);
+                return t;
+            });
+            dump.scheduleAtFixedRate(() -> System.out.println(getReport()),
+                    dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Operation of the storage system measured by time().
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private <T> T time(String operation, Call<T> call) throws Exception {
+        long begin = System.nanoTime();
+        try {
+            return call.call();
+        } catch (Exception ex) {
+            error(operation, ex);
+            throw ex;
+        } finally {
+            latencies.get(operation).record(System.nanoTime() - begin);
+        }
+    }
+
+    private void error(String operation, Exception ex) {
+        errors.get(operation).increment();
+        Throwable cause = ex instanceof UncheckedDAOException ? ex.getCause() : ex;
+        errorsByType.computeIfAbsent(cause.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public Person read(Person p) throws Exception {
+        return time("read", () -> dao.read(p));
+    }
+
+    @Override
+    public ArrayList<Person> readAll() throws Exception {
+        return time("readAll", dao::readAll);
+    }
+
+    @Override
+    public Stream<Person> readStream() throws Exception {
+        long begin = System.nanoTime();
+        Stream<Person> people;
+        try {
+            people = dao.readStream();
+        } catch (Exception ex) {
+            error("readStream", ex);
+            latencies.get("readStream").record(System.nanoTime() - begin);
+            throw ex;
+        }
+        Spliterator<Person> counted = new CountingSpliterator(people.spliterator());
+        return StreamSupport.stream(counted, false)
+                .onClose(() -> {
+                    try {
+                        people.close();
+                    } finally {
+                        latencies.get("readStream").record(System.nanoTime() - begin);
+                    }
+                });
+    }
+
+    @Override
+    public ArrayList<Person> readPage(String afterNif, int limit) throws Exception {
+        return time("readPage", () -> dao.readPage(afterNif, limit));
+    }
+
+    @Override
+    public void insert(Person p) throws Exception {
+        time("insert", () -> {
+            dao.insert(p);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(Person p) throws Exception {
+        time("update", () -> {
+            dao.update(p);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(Person p) throws Exception {
+        time("delete", () -> {
+            dao.delete(p);
+            return null;
+        });
+    }
+
+    @Override
+    public WriteOutcome insertIfAbsent(Person p) throws Exception {
+        return time("insertIfAbsent", () -> dao.insertIfAbsent(p));
+    }
+
+    @Override
+    public WriteOutcome deleteIfPresent(Person p) throws Exception {
+        return time("deleteIfPresent", () -> dao.deleteIfPresent(p));
+    }
+
+    @Override
+    public void insertAll(Collection<Person> people) throws Exception {
+        time("insertAll", () -> {
+            dao.insertAll(people);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAll(Collection<Person> people) throws Exception {
+        time("updateAll", () -> {
+            dao.updateAll(people);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Collection<String> nifs) throws Exception {
+        time("deleteAllNifs", () -> {
+            dao.deleteAll(nifs);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll() throws Exception {
+        time("deleteAll", () -> {
+            dao.deleteAll();
+            return null;
+        });
+    }
+
+    @Override
+    public int count() throws Exception {
+        return time("count", dao::count);
+    }
+
+    @Override
+    public void exportToCsv() throws Exception {
+        time("exportToCsv", () -> {
+            dao.exportToCsv();
+            return null;
+        });
+    }
+
+    /**
+     * Counts the errors thrown while the Stream of readStream is consumed.
+     */
+    private class CountingSpliterator implements Spliterator<Person> {
+
+        private final Spliterator<Person> people;
+
+        CountingSpliterator(Spliterator<Person> people) {
+            this.people = people;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Person> action) {
+            try {
+                return people.tryAdvance(action);
+            } catch (UncheckedDAOException ex) {
+                error("readStream", ex);
+                throw ex;
+            }
+        }
+
+        @Override
+        public Spliterator<Person> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return people.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return people.characteristics();
+        }
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName("People:type=DAO,name=" + getBackend());
+            if (server.isRegistered(candidate)) {
+                server.unregisterMBean(candidate);
+            }
+            server.registerMBean(this, candidate);
+            name = candidate;
+        } catch (JMException | SecurityException ex) {
+            System.out.println("DAO metrics not published through JMX: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Stops printing the report and removes the metrics from JMX.
+     */
+    public void close() {
+        if (dump != null) {
+            dump.shutdownNow();
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException ex) {
+                System.out.println("DAO metrics not removed from JMX: " + ex.getMessage());
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * @return storage system wrapped
+     */
+    public IDAO getDao() {
+        return dao;
+    }
+
+    @Override
+    public String getBackend() {
+        return dao.getClass().getSimpleName();
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+    }
+
+    /**
+     * @return metrics of the operations called at least once, by name
+     */
+    @Override
+    public Map<String, OperationMetrics> getOperations() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        Map<String, OperationMetrics> operations = new TreeMap<>();
+        for (String operation : OPERATIONS) {
+            LatencyHistogram h = latencies.get(operation);
+            long calls = h.getCount();
+            if (calls > 0) {
+                operations.put(operation, new OperationMetrics(calls, errors.get(operation).sum(),
+                        calls / seconds, h.getMean() / 1e3, h.getPercentile(50) / 1e3,
+                        h.getPercentile(99) / 1e3, h.getPercentile(99.9) / 1e3, h.getMax() / 1e3));
+            }
+        }
+        return operations;
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> byType = new TreeMap<>();
+        errorsByType.forEach((type, n) -> byType.put(type, n.sum()));
+        return byType;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return dao instanceof IOCounted ? ((IOCounted) dao).getIOCounters().getBytesRead() : 0;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return dao instanceof IOCounted ? ((IOCounted) dao).getIOCounters().getBytesWritten() : 0;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder("DAO metrics (" + getBackend() + ", "
+                + getUptimeSeconds() + "s)");
+        getOperations().forEach((operation, metrics)
+                -> report.append("\n  ").append(operation).append(": ").append(metrics));
+        Map<String, Long> byType = getErrorsByType();
+        if (!byType.isEmpty()) {
+            report.append("\n  errors: ").append(byType);
+        }
+        if (dao instanceof IOCounted) {
+            report.append("\n  bytes read = ").append(getBytesRead())
+                    .append(", bytes written = ").append(getBytesWritten());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Clears the metrics and starts measuring calls per second again. The
+     * bytes read and written are not cleared.
+     */
+    @Override
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        errors.values().forEach(LongAdder::reset);
+        errorsByType.clear();
+        start = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedDAO {" + getBackend() + "}";
+    }
+}
@@ -0,0 +1,124 @@
+package model.dao;
+
+import java.util.Arrays;
+
+/**
+ * Hash table from int keys (packed NIFs) to int values (rows) on two int
+ * arrays, with open addressing and linear probing, so it adds no object per
+ * entry. Keys and values can not be negative. Used by DAOIntHashMap and
+ * DAOOffHeap.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+final class IntIndex {
+
+    static final int ABSENT = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //Capacity is a power of two, no more than 3/4 of the slots are used
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    //32 - log2(capacity), the bits of the hash that are not used
+    private int shift;
+
+    IntIndex() {
+        clear();
+    }
+
+    void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, ABSENT);
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int home(int key) {
+        //Fibonacci hashing: the high bits of the product spread consecutive
+        //NIFs over the table
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * @return slot of the key, or the free slot where it would go
+     */
+    private int slot(int key) {
+        int i = home(key);
+        while (keys[i] != ABSENT && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @param key
+     * @return value of the key, ABSENT if it is not in the table
+     */
+    int get(int key) {
+        int i = slot(key);
+        return keys[i] != ABSENT ? values[i] : ABSENT;
+    }
+
+    void put(int key, int value) {
+        int i = slot(key);
+        if (keys[i] == ABSENT) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+                i = slot(key);
+            }
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != ABSENT) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Removes the key and moves back the keys after it that could not go in
+     * their own slot, so that no tombstones are needed.
+     * @return value of the key, ABSENT if it was not in the table
+     */
+    int remove(int key) {
+        int i = slot(key);
+        if (keys[i] == ABSENT) {
+            return ABSENT;
+        }
+        int value = values[i];
+        int free = i;
+        for (int j = (i + 1) & mask; keys[j] != ABSENT; j = (j + 1) & mask) {
+            //Moves j to free if its home slot is not between free and j
+            if (((j - home(keys[j])) & mask) >= ((j - free) & mask)) {
+                keys[free] = keys[j];
+                values[free] = values[j];
+                free = j;
+            }
+        }
+        keys[free] = ABSENT;
+        size--;
+        return value;
+    }
+}
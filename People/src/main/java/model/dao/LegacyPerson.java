@@ -0,0 +1,51 @@
+package model.dao;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Date;
+import javax.swing.ImageIcon;
+import model.entity.Person;
+
+/**
+ * Copy of the fields of Person as they were written by the default Java 
+ * serialization, before Person had its own format. It is only used to read 
+ * the "dataFile.ser" files written by previous versions: every object read is
+ * replaced by an equivalent Person.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class LegacyPerson implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //Same names and types as the old Person fields, they define the layout of
+    //the serialized data
+    private String nif;
+    private String name;
+    private Date dateOfBirth;
+    private String postalCode;
+    private String phoneNumber;
+    private String email;
+    private ImageIcon photo;
+    private byte[] photoOnlyJPA;
+
+    /**
+     * Creates the old representation of a person. Used to write files in the
+     * old format (benchmarks).
+     * @param p 
+     */
+    public LegacyPerson(Person p) {
+        this.nif = p.getNif();
+        this.name = p.getName();
+        this.dateOfBirth = p.getDateOfBirth();
+        this.postalCode = p.getPostalCode();
+        this.phoneNumber = p.getPhoneNumber();
+        this.email = p.getEmail();
+        this.photo = p.getPhoto();
+        this.photoOnlyJPA = p.getPhotoOnlyJPA();
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return new Person(name, nif, postalCode, phoneNumber, email, dateOfBirth, photo);
+    }
+}
@@ -0,0 +1,192 @@
+package model.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Reads the tab separated lines of a data file through a MappedByteBuffer.
+ * The scanner only records where every field starts and ends, a String is
+ * built only for the fields that are asked for. The mapping is released when
+ * the scanner is closed so that the file can be renamed or deleted afterwards
+ * (required on Windows).
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+class MappedRecordScanner implements Closeable {
+
+    private static final int MAX_FIELDS = 8;
+    private static final byte[] NULL_BYTES = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final MappedByteBuffer buffer;
+    private final int limit;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private final Calendar calendar = Calendar.getInstance();
+    private final int[] dateParts = new int[3];
+    private byte[] scratch = new byte[64];
+    private int position;
+    private int lineStart;
+    private int fields;
+
+    MappedRecordScanner(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be mapped (" + size + " bytes).");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            limit = (int) size;
+        }
+    }
+
+    /**
+     * @return size of the file in bytes
+     */
+    int length() {
+        return limit;
+    }
+
+    /**
+     * Counts the line breaks of the file without creating any object.
+     * @return number of lines
+     */
+    int countLines() {
+        int count = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves to the next complete line and splits it into fields.
+     * @return false when there are no more lines
+     */
+    boolean next() {
+        while (position < limit) {
+            lineStart = position;
+            fields = 0;
+            int fieldStart = position;
+            int i = position;
+            while (i < limit && buffer.get(i) != '\n') {
+                if (buffer.get(i) == '\t') {
+                    addField(fieldStart, i);
+                    fieldStart = i + 1;
+                }
+                i++;
+            }
+            if (i == limit) {
+                //Last line without line break: incomplete write, ignored
+                position = limit;
+                return false;
+            }
+            addField(fieldStart, i);
+            position = i + 1;
+            if (i > lineStart) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addField(int start, int end) {
+        if (fields < MAX_FIELDS) {
+            starts[fields] = start;
+            ends[fields] = end;
+            fields++;
+        }
+    }
+
+    /**
+     * @return offset in bytes of the current line
+     */
+    long offset() {
+        return lineStart;
+    }
+
+    int fieldCount() {
+        return fields;
+    }
+
+    boolean fieldEquals(int field, byte[] value) {
+        int length = ends[field] - starts[field];
+        if (length != value.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(starts[field] + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isNull(int field) {
+        return fieldEquals(field, NULL_BYTES);
+    }
+
+    String field(int field) {
+        int length = ends[field] - starts[field];
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(starts[field], scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a "yyyy/MM/dd" field without SimpleDateFormat.
+     * @param field
+     * @return the date, or null if the field is "null"
+     */
+    Date date(int field) {
+        if (isNull(field)) {
+            return null;
+        }
+        int[] parts = dateParts;
+        parts[0] = 0;
+        parts[1] = 0;
+        parts[2] = 0;
+        int part = 0;
+        for (int i = starts[field]; i < ends[field] && part < 3; i++) {
+            byte b = buffer.get(i);
+            if (b == '/') {
+                part++;
+            } else {
+                parts[part] = parts[part] * 10 + (b - '0');
+            }
+        }
+        calendar.clear();
+        calendar.set(parts[0], parts[1] - 1, parts[2]);
+        return calendar.getTime();
+    }
+
+    /**
+     * Releases the mapping right away instead of waiting for the garbage
+     * collector. If the JDK does not allow it, the mapping is released later.
+     */
+    @Override
+    public void close() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //Do nothing, the GC will unmap the buffer
+        }
+    }
+}
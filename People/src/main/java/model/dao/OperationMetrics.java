@@ -0,0 +1,75 @@
+package model.dao;
+
+import java.beans.ConstructorProperties;
+import java.util.Locale;
+
+/**
+ * Snapshot of the metrics of one operation of the storage system, as
+ * published by InstrumentedDAO. Latencies are in microseconds.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class OperationMetrics {
+
+    private final long calls;
+    private final long errors;
+    private final double callsPerSecond;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    @ConstructorProperties({"calls", "errors", "callsPerSecond", "meanMicros",
+        "p50Micros", "p99Micros", "p999Micros", "maxMicros"})
+    public OperationMetrics(long calls, long errors, double callsPerSecond, double meanMicros,
+            double p50Micros, double p99Micros, double p999Micros, double maxMicros) {
+        this.calls = calls;
+        this.errors = errors;
+        this.callsPerSecond = callsPerSecond;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getCallsPerSecond() {
+        return callsPerSecond;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "calls = %d, errors = %d, %.1f/s, mean = %.0fus, p50 = %.0fus, p99 = %.0fus, p999 = %.0fus, max = %.0fus",
+                calls, errors, callsPerSecond, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
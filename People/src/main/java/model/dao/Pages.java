@@ -0,0 +1,50 @@
+package model.dao;
+
+import model.entity.Person;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Selects a page of people ordered by NIF for the storage systems that do not
+ * keep their records sorted. Only the people of the page are kept while the
+ * rest are scanned.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+final class Pages {
+
+    private static final Comparator<Person> BY_NIF = Comparator.comparing(Person::getNif);
+
+    private Pages() {
+    }
+
+    /**
+     * @param people people in any order
+     * @param afterNif only people with a greater NIF are selected, null for
+     * the first page
+     * @param limit maximum size of the page
+     * @return the first people after afterNif, ordered by NIF
+     */
+    static ArrayList<Person> select(Iterator<Person> people, String afterNif, int limit) {
+        //Max-heap: the greatest NIF of the page is replaced first
+        PriorityQueue<Person> page = new PriorityQueue<>(Math.max(1, limit), BY_NIF.reversed());
+        while (people.hasNext()) {
+            Person p = people.next();
+            if (afterNif != null && p.getNif().compareTo(afterNif) <= 0) {
+                continue;
+            }
+            if (page.size() < limit) {
+                page.add(p);
+            } else if (limit > 0 && BY_NIF.compare(p, page.peek()) < 0) {
+                page.poll();
+                page.add(p);
+            }
+        }
+        ArrayList<Person> result = new ArrayList<>(page);
+        result.sort(BY_NIF);
+        return result;
+    }
+}
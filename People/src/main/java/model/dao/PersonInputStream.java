@@ -0,0 +1,42 @@
+package model.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import model.entity.Person;
+
+/**
+ * ObjectInputStream that reads Person objects in the current format and in
+ * the format of the default Java serialization used by previous versions. 
+ * The old class description is replaced by LegacyPerson, which has the same 
+ * fields, and every LegacyPerson read is resolved into a Person.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+class PersonInputStream extends ObjectInputStream {
+
+    private boolean legacyFormat;
+
+    PersonInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass desc = super.readClassDescriptor();
+        //The current format is Externalizable and its description has no fields
+        if (desc.getName().equals(Person.class.getName()) && desc.getFields().length > 0) {
+            legacyFormat = true;
+            return ObjectStreamClass.lookup(LegacyPerson.class);
+        }
+        return desc;
+    }
+
+    /**
+     * @return true if any object read so far was written in the old format
+     */
+    boolean isLegacyFormat() {
+        return legacyFormat;
+    }
+}
@@ -0,0 +1,21 @@
+package model.dao;
+
+/**
+ * Wraps the checked exception thrown by the storage system while a
+ * Stream<Person> returned by IDAO.readStream() is being consumed, because the
+ * methods of Stream can not throw checked exceptions. getCause() returns the
+ * original exception.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class UncheckedDAOException extends RuntimeException {
+
+    public UncheckedDAOException(Exception cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized Exception getCause() {
+        return (Exception) super.getCause();
+    }
+}
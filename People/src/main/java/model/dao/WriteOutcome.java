@@ -0,0 +1,18 @@
+package model.dao;
+
+/**
+ * Result of the conditional operations insertIfAbsent and deleteIfPresent of
+ * IDAO.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public enum WriteOutcome {
+    /** The person has been inserted. */
+    INSERTED,
+    /** The person has been deleted. */
+    DELETED,
+    /** Nothing has been inserted: the NIF was already registered. */
+    ALREADY_REGISTERED,
+    /** Nothing has been deleted: the NIF was not registered. */
+    NOT_REGISTERED
+}
@@ -1,21 +1,39 @@
 package model.entity;
 
-import java.io.Serializable;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 import java.util.Objects;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import javax.persistence.Basic;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.Lob;
 import javax.persistence.Transient;
 import javax.swing.ImageIcon;
+import utils.PhotoStore;
 
 /**
  * Encapsulated class that defines the type of entity that will manage the application.
+ * It is written to object streams with its own compact format (see 
+ * writeExternal) instead of the default Java serialization.
  * @author Fran Perez
  * @version 1.1.0
  */
 @Entity
-public class Person implements Serializable{
+public class Person implements Externalizable{
+
+    private static final long serialVersionUID = 1L;
+    //Version of the format written by writeExternal
+    private static final byte EXTERNAL_VERSION = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
 
     @Id 
     private String nif;
@@ -26,8 +44,22 @@ public class Person implements Serializable{
     private String email;
     @Transient
     private ImageIcon photo;
+    //Decodes the photo on the first call to getPhoto(), null once decoded
+    @Transient
+    private Supplier<ImageIcon> photoSource;
+    //Reference of the stored photo given by the storage system, or null
+    @Transient
+    private String photoReference;
+    //PNG read by readExternal, written again as is while the photo is not
+    //replaced
+    @Transient
+    private byte[] photoPng;
+    //Photo of the people stored by a previous version of DAOJPA
     @Lob
+    @Basic(fetch = FetchType.LAZY)
     private byte[] photoOnlyJPA;
+    //Key of the PhotoBlob of the photo, used only by JPA
+    private String photoHash;
 
     public Person(){
         
@@ -107,12 +139,62 @@ public class Person implements Serializable{
         this.dateOfBirth = dateOfBirth;
     }
 
+    /**
+     * Decodes the photo the first time it is called if it was set with
+     * setPhotoSource.
+     * @return the photo or null
+     */
     public ImageIcon getPhoto() {
+        if (photoSource != null) {
+            photo = photoSource.get();
+            photoSource = null;
+        }
         return photo;
     }
 
     public void setPhoto(ImageIcon photo) {
         this.photo = photo;
+        this.photoSource = null;
+        this.photoReference = null;
+        this.photoPng = null;
+    }
+
+    /**
+     * Sets a photo that is decoded only when getPhoto() is called, so that
+     * reading people does not decode photos that are not shown.
+     * @param photoSource 
+     */
+    public void setPhotoSource(Supplier<ImageIcon> photoSource) {
+        setPhotoSource(photoSource, null);
+    }
+
+    /**
+     * Sets a photo that is decoded only when getPhoto() is called, together
+     * with the reference the storage system keeps it under.
+     * @param photoSource
+     * @param photoReference hash of the stored photo (or path of a photo
+     * stored by a previous version), or null if unknown
+     */
+    public void setPhotoSource(Supplier<ImageIcon> photoSource, String photoReference) {
+        this.photo = null;
+        this.photoSource = photoSource;
+        this.photoReference = photoReference;
+        this.photoPng = null;
+    }
+
+    /**
+     * @return reference of the stored photo, a hash that changes with the
+     * photo, or null if the storage system does not give one
+     */
+    public String getPhotoReference() {
+        return photoReference;
+    }
+
+    /**
+     * @return true if the person has a photo, without decoding it
+     */
+    public boolean hasPhoto() {
+        return photoSource != null || photo != null;
     }
 
     public byte[] getPhotoOnlyJPA() {
@@ -123,6 +205,14 @@ public class Person implements Serializable{
         this.photoOnlyJPA = photoOnlyJPA;
     }
 
+    public String getPhotoHash() {
+        return photoHash;
+    }
+
+    public void setPhotoHash(String photoHash) {
+        this.photoHash = photoHash;
+    }
+
     public String getPostalCode() {
         return postalCode;
     }
@@ -149,6 +239,74 @@ public class Person implements Serializable{
     
     
     
+    /**
+     * Writes the person with a leading format version byte. The photo is 
+     * stored as PNG and the bytes used only by JPA are not written.
+     * @param out
+     * @throws IOException 
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(EXTERNAL_VERSION);
+        writeNullableUTF(out, nif);
+        writeNullableUTF(out, name);
+        writeNullableUTF(out, postalCode);
+        writeNullableUTF(out, phoneNumber);
+        writeNullableUTF(out, email);
+        out.writeLong(dateOfBirth != null ? dateOfBirth.getTime() : NO_DATE);
+        //A photo read from a stream is not decoded nor encoded again
+        byte[] png = photoPng != null ? photoPng : hasPhoto() ? PhotoStore.toPng(getPhoto()) : null;
+        if (png != null) {
+            out.writeInt(png.length);
+            out.write(png);
+        } else {
+            out.writeInt(-1);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != EXTERNAL_VERSION) {
+            throw new InvalidClassException(Person.class.getName(), "Unsupported format version " + version);
+        }
+        nif = readNullableUTF(in);
+        name = readNullableUTF(in);
+        postalCode = readNullableUTF(in);
+        phoneNumber = readNullableUTF(in);
+        email = readNullableUTF(in);
+        long time = in.readLong();
+        dateOfBirth = time != NO_DATE ? new Date(time) : null;
+        int length = in.readInt();
+        setPhoto(null);
+        if (length >= 0) {
+            byte[] png = new byte[length];
+            in.readFully(png);
+            setPhotoSource(() -> decode(png), PhotoStore.hash(png));
+            photoPng = png;
+        }
+    }
+
+    private static ImageIcon decode(byte[] png) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            return image != null ? new ImageIcon(image) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static void writeNullableUTF(ObjectOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableUTF(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     /**
      * Function used to compare two Personas. There cannot be two or more people
      * with the same ID. Actually it isn't used in this project.
@@ -163,7 +321,9 @@ public class Person implements Serializable{
 
     /**
      * Function used to compare two Personas in ArrayList and HashMap 
-     * structures. There cannot be two or more people with the same ID.
+     * structures. There cannot be two or more people with the same ID. The
+     * NIFs are compared, not their hashCode(), which can be the same for two
+     * different NIFs.
      * @param obj
      * @return 
      */
@@ -179,7 +339,7 @@ public class Person implements Serializable{
             return false;
         }
         final Person other = (Person) obj;
-        return Objects.equals(this.hashCode(), other.hashCode());
+        return Objects.equals(this.nif, other.nif);
     }
 
     
@@ -191,7 +351,7 @@ public class Person implements Serializable{
     @Override
     public String toString() {
         return "Person {" + "Name = " + name + ", NIF = " + nif
-                + ", DateOfBirth = " + dateOfBirth + ", Photo = " + (photo!=null) + "}";
+                + ", DateOfBirth = " + dateOfBirth + ", Photo = " + hasPhoto() + "}";
     }
 
 }
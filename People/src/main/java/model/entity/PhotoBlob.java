@@ -0,0 +1,48 @@
+package model.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+
+/**
+ * Photo stored by the object DDBB once for all the people that have it. The
+ * SHA-256 hash of the PNG is used as the key and the people refer to it by
+ * the hash (Person.photoHash).
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+@Entity
+public class PhotoBlob {
+
+    @Id
+    private String hash;
+    @Lob
+    private byte[] png;
+    //Number of people that refer to the photo
+    private int refs;
+
+    public PhotoBlob() {
+
+    }
+
+    public PhotoBlob(String hash, byte[] png) {
+        this.hash = hash;
+        this.png = png;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public byte[] getPng() {
+        return png;
+    }
+
+    public int getRefs() {
+        return refs;
+    }
+
+    public void setRefs(int refs) {
+        this.refs = refs;
+    }
+}
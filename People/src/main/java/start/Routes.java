@@ -12,8 +12,9 @@ public enum Routes {
     APPIMAGES("images", null, null, null, null, null, null, null, null),
     FILE ("File", "Photos", "dataFile.txt", null, null, null, null, null, null),
     FILES ("FileSer", null, "dataFile.ser", null, null, null, null, null, null ),
-    DB("SQL_DataBase", "Photos", null, "jdbc:mysql://localhost:3306", "?useSSL=false&useTimezone=true&serverTimezone=UTC&allowPublicKeyRetrieval=true", "root", "", "people", "person"),
-    LOGIN(null, null, null, "jdbc:mysql://localhost:3306", "?useSSL=false&useTimezone=true&serverTimezone=UTC&allowPublicKeyRetrieval=true", "root", "", "login", "user"),
+    FILEB ("FileBin", "Photos", "dataFile.bin", null, null, null, null, null, null),
+    DB("SQL_DataBase", "Photos", null, "jdbc:mysql://localhost:3306", "?useSSL=false&useTimezone=true&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true&useCursorFetch=true", "root", "", "people", "person", 10, 300),
+    LOGIN(null, null, null, "jdbc:mysql://localhost:3306", "?useSSL=false&useTimezone=true&serverTimezone=UTC&allowPublicKeyRetrieval=true", "root", "", "login", "user", 2, 60),
     DBO("JPA_DataBase", null, null, "objectdb:db//people.odb;user=admin;password=admin", null, null, null, null, null);
 
     private final String folderPath;
@@ -25,21 +26,35 @@ public enum Routes {
     private final String dbServerPassword;
     private final String dbServerDB;
     private final String dbServerTABLE;
+    //Maximum connections of the JDBC pool and seconds an idle one is kept
+    private final int dbPoolSize;
+    private final int dbPoolIdleTimeout;
     
     
     private Routes (String folderPath, String folderPhotos, String dataFile,
             String dbServerAddress, String dbServerComOpt, String dbServerUser,
             String dbServerPassword, String dbServerDB, String dbServerTABLE){
+        this(folderPath, folderPhotos, dataFile, dbServerAddress, dbServerComOpt,
+                dbServerUser, dbServerPassword, dbServerDB, dbServerTABLE, 0, 0);
+    }
+
+    private Routes (String folderPath, String folderPhotos, String dataFile,
+            String dbServerAddress, String dbServerComOpt, String dbServerUser,
+            String dbServerPassword, String dbServerDB, String dbServerTABLE,
+            int dbPoolSize, int dbPoolIdleTimeout){
         String userDir = System.getProperty("user.dir");
         this.folderPath = userDir + File.separator + folderPath;
         this.folderPhotos = this.folderPath + File.separator + folderPhotos;
         this.dataFile = this.folderPath + File.separator + dataFile;
-        this.dbServerAddress = dbServerAddress;
-        this.dbServerComOpt = dbServerComOpt;
-        this.dbServerUser = dbServerUser;
-        this.dbServerPassword = dbServerPassword;
+        //The server can be replaced with -Dpeople.DB.address=... (benchmarks)
+        this.dbServerAddress = System.getProperty("people." + name() + ".address", dbServerAddress);
+        this.dbServerComOpt = System.getProperty("people." + name() + ".options", dbServerComOpt);
+        this.dbServerUser = System.getProperty("people." + name() + ".user", dbServerUser);
+        this.dbServerPassword = System.getProperty("people." + name() + ".password", dbServerPassword);
         this.dbServerDB = dbServerDB;
         this.dbServerTABLE = dbServerTABLE;
+        this.dbPoolSize = dbPoolSize;
+        this.dbPoolIdleTimeout = dbPoolIdleTimeout;
     }
 
     public String getFolderPath() {
@@ -77,6 +92,14 @@ public enum Routes {
     public String getDbServerTABLE() {
         return dbServerTABLE;
     }
+
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public int getDbPoolIdleTimeout() {
+        return dbPoolIdleTimeout;
+    }
     
     
     
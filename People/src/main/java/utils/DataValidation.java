@@ -4,7 +4,18 @@
  */
 package utils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.entity.Person;
+
 /**
+ * The validators are called on every keystroke, so they do not allocate: NIF,
+ * postal code and phone number are checked with hand-written scanners that
+ * accept exactly the same strings as the regular expressions below, and the
+ * email with a precompiled Pattern and a Matcher reused by each thread.
  * @author Francesc Perez 
  * @version 1.1.0
  */
@@ -13,12 +24,31 @@ public class DataValidation {
     public static final String HASHMAP = "HashMap";
     public static final String FILE = "File";
     public static final String FILE_SERIALIZATION = "File (Serialization)";
+    public static final String BINARY_FILE = "File (Binary)";
     public static final String SQL_DATABASE = "SQL - Database";
     public static final String JPA_DATABASE = "JPA - Database";
     public static final String POSTAL_CODE_REGEX = "^(\\d{5})(?:[-\\s]?\\d{4})?$";
     public static final String PHONE_NUMBER_REGEX = "^\\+?[0-9]{1,4}?[-.\\s]?(\\d{1,3})?[-.\\s]?\\d{1,4}[-.\\s]?\\d{1,4}[-.\\s]?\\d{1,9}$";
     public static final String EMAIL_REGEX = "^[a-zA-Z0-9_+&-]+(?:.[a-zA-Z0-9_+&-]+)*@(?:[a-zA-Z0-9-]+.)+[a-zA-Z]{2,7}$";
     
+    public static final Pattern POSTAL_CODE_PATTERN = Pattern.compile(POSTAL_CODE_REGEX);
+    public static final Pattern PHONE_NUMBER_PATTERN = Pattern.compile(PHONE_NUMBER_REGEX);
+    public static final Pattern EMAIL_PATTERN = Pattern.compile(EMAIL_REGEX);
+    
+    private static final char[] NIF_LETTERS = "TRWAGMYFPDXBNJZSQVHLCKE".toCharArray();
+    private static final int NIF_DIGITS = 8;
+    //Matchers are not thread safe, every thread resets its own
+    private static final ThreadLocal<Matcher> EMAIL_MATCHER = ThreadLocal.withInitial(() -> EMAIL_PATTERN.matcher(""));
+    
+    //PHONE_NUMBER_REGEX as a sequence of elements: a run of digits between a
+    //minimum and a maximum length, or an optional character ('+' or a 
+    //separator). The optional group (\d{1,3})? is a run of 0 to 3 digits.
+    private static final int OPTIONAL_PLUS = -1;
+    private static final int OPTIONAL_SEPARATOR = -2;
+    private static final int[][] PHONE_ELEMENTS = {
+        {OPTIONAL_PLUS}, {1, 4}, {OPTIONAL_SEPARATOR}, {0, 3}, {OPTIONAL_SEPARATOR},
+        {1, 4}, {OPTIONAL_SEPARATOR}, {1, 4}, {OPTIONAL_SEPARATOR}, {1, 9}
+    };
 
     public static boolean isNumber(char c) {
         return (48 <= c && c <= 57);
@@ -32,21 +62,142 @@ public class DataValidation {
     }
 
     public static String calculateNifLetter(String nifNoLetter) {
-        String [] letter = {"T","R","W","A","G","M","Y","F","P","D","X","B",
-            "N","J","Z","S","Q","V","H","L","C","K","E"};
-        return nifNoLetter + letter[Integer.parseInt(nifNoLetter)%23];
+        return nifNoLetter + NIF_LETTERS[Integer.parseInt(nifNoLetter) % 23];
     }
     
-    //Data validation of postal code
+    /**
+     * Checks that the NIF is 8 digits followed by its control letter.
+     * @param nif
+     * @return true if it is valid
+     */
+    public static boolean validNif(String nif) {
+        if (nif == null || nif.length() != NIF_DIGITS + 1) {
+            return false;
+        }
+        int number = 0;
+        for (int i = 0; i < NIF_DIGITS; i++) {
+            char c = nif.charAt(i);
+            if (!isNumber(c)) {
+                return false;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return nif.charAt(NIF_DIGITS) == NIF_LETTERS[number % 23];
+    }
+    
+    //Data validation of postal code: 5 digits, optionally followed by 4 more
+    //digits, with or without a hyphen or whitespace between them
     public static boolean validPostalCode(String postalCode){
-        return (postalCode.matches(POSTAL_CODE_REGEX));
+        int length = postalCode.length();
+        if (length != 5 && length != 9 && length != 10) {
+            return false;
+        }
+        for (int i = 0; i < 5; i++) {
+            if (!isNumber(postalCode.charAt(i))) {
+                return false;
+            }
+        }
+        int start = 5;
+        if (length == 10) {
+            char separator = postalCode.charAt(5);
+            if (separator != '-' && !isWhitespace(separator)) {
+                return false;
+            }
+            start = 6;
+        }
+        for (int i = start; i < length; i++) {
+            if (!isNumber(postalCode.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
     
     public static boolean validPhoneNumber(String phoneNumber){
-        return (phoneNumber.matches(PHONE_NUMBER_REGEX));
+        return matchPhone(phoneNumber, 0, 0);
+    }
+    
+    /**
+     * Backtracking match of PHONE_ELEMENTS from the given element and 
+     * position, as the regular expression engine does. The elements consume
+     * at most 29 characters, so the search is short.
+     */
+    private static boolean matchPhone(String s, int position, int element) {
+        if (element == PHONE_ELEMENTS.length) {
+            return position == s.length();
+        }
+        int[] e = PHONE_ELEMENTS[element];
+        if (e[0] < 0) {
+            if (position < s.length()) {
+                char c = s.charAt(position);
+                boolean matches = e[0] == OPTIONAL_PLUS ? c == '+' : c == '-' || c == '.' || isWhitespace(c);
+                if (matches && matchPhone(s, position + 1, element + 1)) {
+                    return true;
+                }
+            }
+            return matchPhone(s, position, element + 1);
+        }
+        int digits = 0;
+        while (digits < e[1] && position + digits < s.length() && isNumber(s.charAt(position + digits))) {
+            digits++;
+        }
+        for (int n = e[0]; n <= digits; n++) {
+            if (matchPhone(s, position + n, element + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    //\s of the regular expressions
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
     
     public static boolean validEmail(String email){
-        return (email.matches(EMAIL_REGEX));
+        return EMAIL_MATCHER.get().reset(email).matches();
+    }
+    
+    /**
+     * Validates the people of an import before storing them and reports every
+     * wrong field, instead of stopping at the first one. NIFs repeated in the
+     * collection are reported too.
+     * @param people
+     * @return the errors found, empty if all the people are valid
+     */
+    public static ArrayList<FieldError> validateAll(Collection<Person> people) {
+        ArrayList<FieldError> errors = new ArrayList<>();
+        HashSet<String> nifs = new HashSet<>();
+        int index = 0;
+        for (Person p : people) {
+            if (p.getName() == null || p.getName().isEmpty() || !validName(p.getName())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.NAME, p.getName()));
+            }
+            if (!validNif(p.getNif())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.NIF, p.getNif()));
+            } else if (!nifs.add(p.getNif())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.NIF, p.getNif(), "repeated"));
+            }
+            if (p.getPostalCode() == null || !validPostalCode(p.getPostalCode())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.POSTAL_CODE, p.getPostalCode()));
+            }
+            if (p.getPhoneNumber() == null || !validPhoneNumber(p.getPhoneNumber())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.PHONE_NUMBER, p.getPhoneNumber()));
+            }
+            if (p.getEmail() == null || !validEmail(p.getEmail())) {
+                errors.add(new FieldError(index, p.getNif(), FieldError.EMAIL, p.getEmail()));
+            }
+            index++;
+        }
+        return errors;
+    }
+    
+    private static boolean validName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (!isLetter(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,61 @@
+package utils;
+
+/**
+ * Wrong field of a person found by DataValidation.validateAll().
+ * @author Francesc Perez 
+ * @version 1.1.0
+ */
+public class FieldError {
+    
+    public static final String NAME = "name";
+    public static final String NIF = "nif";
+    public static final String POSTAL_CODE = "postalCode";
+    public static final String PHONE_NUMBER = "phoneNumber";
+    public static final String EMAIL = "email";
+    
+    private final int index;
+    private final String nif;
+    private final String field;
+    private final String value;
+    private final String message;
+
+    public FieldError(int index, String nif, String field, String value) {
+        this(index, nif, field, value, value == null || value.isEmpty() ? "required" : "not valid");
+    }
+
+    public FieldError(int index, String nif, String field, String value, String message) {
+        this.index = index;
+        this.nif = nif;
+        this.field = field;
+        this.value = value;
+        this.message = message;
+    }
+
+    /**
+     * @return position of the person in the validated collection
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getNif() {
+        return nif;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " (" + nif + ") " + field + " '" + value + "' " + message;
+    }
+}
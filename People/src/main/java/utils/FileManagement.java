@@ -8,6 +8,10 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import model.dao.UncheckedDAOException;
+import model.entity.Person;
 
 /**
  *
@@ -23,13 +27,23 @@ public class FileManagement {
         File file = new File(DEFAULT_CSV_LOCATION);
         file.mkdirs();
     }
-    public void fileWriter(String text) {
+    /**
+     * Writes one line per person into the CSV file through a single writer,
+     * consuming the stream as it goes. The photo column only says whether the
+     * person has a photo, so no photo is loaded.
+     * @param people
+     * @throws Exception if the people or the file can not be read or written
+     */
+    public void exportToCsv(Stream<Person> people) throws Exception {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(DEFAULT_CSV_PATH, false))) {
-            bw.write(text);
-            bw.newLine();
-            bw.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+            Iterator<Person> it = people.iterator();
+            while (it.hasNext()) {
+                Person p = it.next();
+                bw.write(p.getNif() + "," + p.getName() + "," + p.getPostalCode() + "," + p.getPhoneNumber() + "," + p.getEmail() + "," +  p.getDateOfBirth() + "," + p.hasPhoto());
+                bw.newLine();
+            }
+        } catch (UncheckedDAOException ex) {
+            throw ex.getCause();
         }
     }
     
@@ -0,0 +1,117 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets, as
+ * HdrHistogram does: values under 128 have a bucket each and every power of
+ * two above is split in 64 buckets, so a percentile is reported with an
+ * error under 1/64 (1.6%) whatever its magnitude, with a fixed array of
+ * counters. Values are recorded without locks and can be recorded and read
+ * by several threads at the same time.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class LatencyHistogram {
+
+    //Values under LINEAR have their own bucket
+    private static final int LINEAR = 128;
+    //Buckets per power of two above LINEAR
+    private static final int SUB_BUCKETS = 64;
+    private static final int BUCKETS = LINEAR + (63 - 7) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        total.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * @return maximum value recorded, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the values recorded, in nanoseconds
+     */
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9
+     * @return the value under which that percentage of the values recorded
+     * are, in nanoseconds, 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all the values recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - 6;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value that falls in the bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,428 @@
+package utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.function.Supplier;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.swing.ImageIcon;
+
+/**
+ * Content-addressed store of the photos of a storage system. Every photo is
+ * saved once, as HASH.png in the photos folder, where HASH is the SHA-256 of
+ * its PNG bytes, and people reference it by that hash. People with the same
+ * photo share the file. The store counts the references to every photo and
+ * deletes the file when the last one is released. The counts are not saved:
+ * the DAO rebuilds them from its data with recount() when it is created,
+ * which also deletes the photos nobody references (left by a crash).
+ *
+ * A photo loaded from a PNG file (an ImageIcon created with the path of the
+ * file, as load() does) keeps the original bytes of that file instead of
+ * being encoded again. If it was loaded from this store its hash is its name,
+ * so storing it again (an update that keeps the photo) reads and writes
+ * nothing. Other photos are encoded by ImageIO directly into a temporary
+ * file. New photos are moved into place with a rename, so a photo is never
+ * left half written.
+ *
+ * References written by previous versions are paths to a NIF.png file. They
+ * are still loaded and the file is deleted when the reference is released.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class PhotoStore {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    //Signature, length and type of the IHDR chunk, width and height
+    private static final int PNG_HEADER_LENGTH = 24;
+    private static final int HASH_LENGTH = 64;
+    private static final String EXTENSION = ".png";
+
+    private final Path folder;
+    //Hash -> number of people that reference the photo
+    private final HashMap<String, Integer> references = new HashMap<>();
+
+    /**
+     * @param folderPhotos folder of the photos, e.g. Routes.FILE.getFolderPhotos()
+     */
+    public PhotoStore(String folderPhotos) {
+        this.folder = Paths.get(folderPhotos);
+    }
+
+    /**
+     * @param reference
+     * @return true if the reference is a hash, false if it is the path of a
+     * photo stored by a previous version
+     */
+    public static boolean isHash(String reference) {
+        if (reference == null || reference.length() != HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            char c = reference.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param reference hash, or path of a photo stored by a previous version
+     * @return path of the photo file
+     */
+    public Path path(String reference) {
+        return isHash(reference) ? folder.resolve(reference + EXTENSION) : Paths.get(reference);
+    }
+
+    /**
+     * @param reference hash, or path of a photo stored by a previous version
+     * @return the photo, its description is the path of the file
+     */
+    public ImageIcon load(String reference) {
+        return new ImageIcon(path(reference).toString());
+    }
+
+    /**
+     * @param reference hash, or path of a photo stored by a previous version
+     * @return supplier that loads the photo when it is called, for 
+     * Person.setPhotoSource
+     */
+    public Supplier<ImageIcon> loader(String reference) {
+        return () -> load(reference);
+    }
+
+    /**
+     * Stores the photo, if it is not stored yet, and adds a reference to it.
+     * @param photo
+     * @return hash of the photo
+     * @throws IOException
+     */
+    public synchronized String put(ImageIcon photo) throws IOException {
+        Path source = sourcePng(photo);
+        String hash = source != null ? storedHash(source) : null;
+        if (hash == null) {
+            hash = source != null ? copy(source) : encode(photo);
+        }
+        references.merge(hash, 1, Integer::sum);
+        return hash;
+    }
+
+    /**
+     * Adds a reference to a stored photo.
+     * @param reference
+     */
+    public synchronized void retain(String reference) {
+        if (isHash(reference)) {
+            references.merge(reference, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Removes a reference to a photo and deletes the file if it was the last
+     * one.
+     * @param reference hash, or path of a photo stored by a previous version,
+     * null is ignored
+     * @throws IOException
+     */
+    public synchronized void release(String reference) throws IOException {
+        if (reference == null) {
+            return;
+        }
+        if (!isHash(reference)) {
+            //Photo of a single person stored by a previous version
+            Files.deleteIfExists(path(reference));
+            return;
+        }
+        Integer count = references.get(reference);
+        if (count == null || count <= 1) {
+            references.remove(reference);
+            Files.deleteIfExists(path(reference));
+        } else {
+            references.put(reference, count - 1);
+        }
+    }
+
+    /**
+     * Sets the reference counts from the references found in the data of the
+     * DAO and deletes the photos that are not referenced.
+     * @param live references of the people registered, one per person
+     * @throws IOException
+     */
+    public synchronized void recount(Collection<String> live) throws IOException {
+        references.clear();
+        for (String reference : live) {
+            retain(reference);
+        }
+        File[] files = folder.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(EXTENSION)) {
+                String hash = name.substring(0, name.length() - EXTENSION.length());
+                if (isHash(hash) && !references.containsKey(hash)) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all the photos of the folder.
+     * @throws IOException
+     */
+    public synchronized void deleteAll() throws IOException {
+        references.clear();
+        File[] files = folder.toFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+
+    /**
+     * @return number of photos stored
+     */
+    public synchronized int size() {
+        return references.size();
+    }
+
+    /**
+     * @param source
+     * @return the hash of the source if it is a photo of this store
+     */
+    private String storedHash(Path source) {
+        String name = source.getFileName().toString();
+        if (!name.endsWith(EXTENSION)) {
+            return null;
+        }
+        String hash = name.substring(0, name.length() - EXTENSION.length());
+        Path parent = source.toAbsolutePath().normalize().getParent();
+        if (!isHash(hash) || !folder.toAbsolutePath().normalize().equals(parent)) {
+            return null;
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes the PNG file and copies it into the store, channel to channel,
+     * if no other person has the same photo.
+     */
+    private String copy(Path source) throws IOException {
+        String hash = hash(source);
+        Path target = path(hash);
+        if (Files.exists(target)) {
+            return hash;
+        }
+        Files.createDirectories(folder);
+        Path tmp = Files.createTempFile(folder, "photo", ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long copied = 0;
+                while (copied < size) {
+                    copied += in.transferTo(copied, size - copied, out);
+                }
+                out.force(true);
+            }
+            move(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return hash;
+    }
+
+    /**
+     * Encodes the photo into a temporary file, hashes it and moves it into
+     * the store, or discards it if the same photo is already stored.
+     */
+    private String encode(ImageIcon photo) throws IOException {
+        Files.createDirectories(folder);
+        Path tmp = Files.createTempFile(folder, "photo", ".tmp");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(tmp.toFile(), "rw");
+                    ImageOutputStream out = new FileImageOutputStream(raf)) {
+                writePng(toImage(photo), out);
+                out.flush();
+                raf.getChannel().force(true);
+            }
+            String hash = hash(tmp);
+            Path target = path(hash);
+            if (!Files.exists(target)) {
+                move(tmp, target);
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Returns the photo as PNG bytes, the original ones if it was loaded from
+     * a PNG file.
+     * @param photo
+     * @return PNG bytes, or null if the photo has no size
+     * @throws IOException
+     */
+    public static byte[] toPng(ImageIcon photo) throws IOException {
+        if (photo.getIconWidth() <= 0 || photo.getIconHeight() <= 0) {
+            return null;
+        }
+        Path source = sourcePng(photo);
+        if (source != null) {
+            return Files.readAllBytes(source);
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(png)) {
+            writePng(toImage(photo), out);
+        }
+        return png.toByteArray();
+    }
+
+    /**
+     * @param png
+     * @return SHA-256 of the bytes in hexadecimal
+     */
+    public static String hash(byte[] png) {
+        MessageDigest digest = sha256();
+        digest.update(png);
+        return toHex(digest.digest());
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            //Every Java platform implements SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static void move(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writePng(BufferedImage image, ImageOutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) {
+            throw new IOException("No PNG writer available.");
+        }
+        ImageWriter writer = writers.next();
+        try {
+            writer.setOutput(out);
+            writer.write(image);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Decoded photos (ImageIO) are already BufferedImages, the ones loaded by
+     * the Toolkit are drawn into one.
+     */
+    private static BufferedImage toImage(ImageIcon photo) {
+        if (photo.getImage() instanceof BufferedImage) {
+            return (BufferedImage) photo.getImage();
+        }
+        BufferedImage bi = new BufferedImage(photo.getIconWidth(), photo.getIconHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        bi.getGraphics().drawImage(photo.getImage(), 0, 0, null);
+        return bi;
+    }
+
+    /**
+     * Returns the PNG file the photo was loaded from: the description of an
+     * ImageIcon created from a file name is that name. The file is only used
+     * if it is still a PNG of the same size as the photo (not a scaled copy).
+     * @param photo
+     * @return path of the file, or null
+     */
+    private static Path sourcePng(ImageIcon photo) {
+        String description = photo.getDescription();
+        if (description == null || !description.toLowerCase().endsWith(EXTENSION)) {
+            return null;
+        }
+        Path path;
+        try {
+            path = Paths.get(description);
+        } catch (InvalidPathException ex) {
+            return null;
+        }
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(PNG_HEADER_LENGTH);
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] bytes = header.array();
+            int read = 0;
+            int n;
+            while (read < bytes.length && (n = in.read(bytes, read, bytes.length - read)) != -1) {
+                read += n;
+            }
+            if (read < bytes.length) {
+                return null;
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (header.get(i) != PNG_SIGNATURE[i]) {
+                return null;
+            }
+        }
+        if (header.getInt(16) != photo.getIconWidth() || header.getInt(20) != photo.getIconHeight()) {
+            return null;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,227 @@
+package utils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Thumbnails of the photos of the people, rendered at the size of the label
+ * that shows them. They are kept in memory in least recently used order up
+ * to a maximum number of pixels, and, if a folder is given, the thumbnails of
+ * the photos stored by hash also as HASH_WIDTHxHEIGHT.png files, so that they
+ * are not rendered again in the next session. A thumbnail is looked up by the
+ * reference of the photo, so a photo changed by another session, whose hash
+ * is different, is never shown with an old thumbnail. The thumbnails of a
+ * photo without reference must be invalidated when the photo of its person
+ * changes.
+ *
+ * Thumbnails are rendered with Graphics2D and bilinear interpolation into a
+ * BufferedImage, so they are complete when render() returns, unlike the
+ * images of getScaledInstance(), which are scaled asynchronously when they
+ * are drawn. render() does the work of the disk and the scaling and should be
+ * called outside the event dispatch thread.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class ThumbnailCache {
+
+    private static final String EXTENSION = ".png";
+
+    private final long maxPixels;
+    private final Path folder;
+    //Key (NIF, photo reference and size) -> thumbnail, in access order
+    private final LinkedHashMap<String, ImageIcon> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private long pixels;
+
+    /**
+     * @param maxPixels maximum number of pixels of the thumbnails kept in
+     * memory
+     * @param folderThumbnails folder of the thumbnails saved on disk, or null
+     * to keep them only in memory
+     */
+    public ThumbnailCache(long maxPixels, String folderThumbnails) {
+        if (maxPixels <= 0) {
+            throw new IllegalArgumentException("Maximum pixels must be positive: " + maxPixels);
+        }
+        this.maxPixels = maxPixels;
+        this.folder = folderThumbnails != null ? Paths.get(folderThumbnails) : null;
+    }
+
+    /**
+     * Returns the thumbnail of the photo, from memory, from disk or rendered
+     * now.
+     * @param nif NIF of the person
+     * @param reference reference of the photo (Person.getPhotoReference()),
+     * or null
+     * @param photo photo of the person, only decoded if the thumbnail is not
+     * cached
+     * @param width
+     * @param height
+     * @return thumbnail of width x height pixels, or the photo itself if it
+     * has that size already
+     */
+    public ImageIcon render(String nif, String reference, Supplier<ImageIcon> photo, int width, int height) {
+        String key = nif + "_" + reference + "_" + width + "x" + height;
+        ImageIcon thumbnail = get(key);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+        //Only a hash names the same photo in every session
+        String diskKey = PhotoStore.isHash(reference) ? reference + "_" + width + "x" + height : null;
+        thumbnail = readFromDisk(diskKey);
+        if (thumbnail == null) {
+            ImageIcon original = photo.get();
+            if (original == null || original.getIconWidth() <= 0 || original.getIconHeight() <= 0) {
+                return original;
+            }
+            if (original.getIconWidth() == width && original.getIconHeight() == height) {
+                //Nothing to render, nor to save
+                thumbnail = original;
+            } else {
+                thumbnail = new ImageIcon(scale(original, width, height));
+                writeToDisk(diskKey, thumbnail);
+            }
+        }
+        put(key, thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Removes the thumbnails of the person from memory. The files on disk are
+     * named by the hash of the photo, so they never belong to another photo.
+     * @param nif
+     */
+    public synchronized void invalidate(String nif) {
+        String prefix = nif + "_";
+        Iterator<Map.Entry<String, ImageIcon>> it = thumbnails.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ImageIcon> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                pixels -= weight(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the thumbnails, from memory and from disk.
+     */
+    public void clear() {
+        synchronized (this) {
+            thumbnails.clear();
+            pixels = 0;
+        }
+        for (File f : diskFiles()) {
+            f.delete();
+        }
+    }
+
+    /**
+     * @return number of pixels of the thumbnails kept in memory
+     */
+    public synchronized long getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Scales the photo with bilinear interpolation.
+     * @param photo
+     * @param width
+     * @param height
+     * @return image of width x height pixels
+     */
+    public static BufferedImage scale(ImageIcon photo, int width, int height) {
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(photo.getImage(), 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static long weight(ImageIcon thumbnail) {
+        return (long) thumbnail.getIconWidth() * thumbnail.getIconHeight();
+    }
+
+    private synchronized ImageIcon get(String key) {
+        return thumbnails.get(key);
+    }
+
+    /**
+     * Keeps the thumbnail and evicts the least recently used ones until the
+     * pixels are under the maximum. A thumbnail bigger than the maximum is
+     * not kept.
+     */
+    private synchronized void put(String key, ImageIcon thumbnail) {
+        ImageIcon previous = thumbnails.put(key, thumbnail);
+        if (previous != null) {
+            pixels -= weight(previous);
+        }
+        pixels += weight(thumbnail);
+        Iterator<ImageIcon> eldest = thumbnails.values().iterator();
+        while (pixels > maxPixels && eldest.hasNext()) {
+            pixels -= weight(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private ImageIcon readFromDisk(String key) {
+        if (folder == null || key == null) {
+            return null;
+        }
+        File f = folder.resolve(key + EXTENSION).toFile();
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(f);
+            return image != null ? new ImageIcon(image) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the thumbnail through a temporary file renamed into place. A
+     * thumbnail that cannot be saved is only kept in memory.
+     */
+    private void writeToDisk(String key, ImageIcon thumbnail) {
+        if (folder == null || key == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Files.createDirectories(folder);
+            tmp = Files.createTempFile(folder, "thumbnail", ".tmp");
+            ImageIO.write((BufferedImage) thumbnail.getImage(), "png", tmp.toFile());
+            Files.move(tmp, folder.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            System.out.println("Thumbnail not saved: " + ex.getMessage());
+        } finally {
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+        }
+    }
+
+    private File[] diskFiles() {
+        File[] files = folder != null ? folder.toFile().listFiles() : null;
+        return files != null ? files : new File[0];
+    }
+}
@@ -56,7 +56,9 @@ public class DataStorageSelection extends javax.swing.JFrame {
         dataBaseCheck = new javax.swing.JCheckBox();
         hashMapCheck = new javax.swing.JCheckBox();
         fileSerializationCheck = new javax.swing.JCheckBox();
+        binaryFileCheck = new javax.swing.JCheckBox();
         dataBaseSerializationCheck = new javax.swing.JCheckBox();
+        cacheCheck = new javax.swing.JCheckBox();
         authorMail = new javax.swing.JLabel();
         accept = new javax.swing.JButton();
         cancel = new javax.swing.JButton();
@@ -69,9 +71,9 @@ public class DataStorageSelection extends javax.swing.JFrame {
         setCursor(new java.awt.Cursor(java.awt.Cursor.DEFAULT_CURSOR));
         setFocusable(false);
         setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
-        setMaximumSize(new java.awt.Dimension(500, 550));
-        setMinimumSize(new java.awt.Dimension(500, 550));
-        setPreferredSize(new java.awt.Dimension(500, 550));
+        setMaximumSize(new java.awt.Dimension(500, 650));
+        setMinimumSize(new java.awt.Dimension(500, 650));
+        setPreferredSize(new java.awt.Dimension(500, 650));
         setResizable(false);
         getContentPane().setLayout(new java.awt.GridBagLayout());
 
@@ -124,7 +126,7 @@ public class DataStorageSelection extends javax.swing.JFrame {
         });
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 5;
+        gridBagConstraints.gridy = 6;
         gridBagConstraints.fill = java.awt.GridBagConstraints.BOTH;
         gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHWEST;
         gridBagConstraints.insets = new java.awt.Insets(12, 24, 12, 24);
@@ -160,6 +162,21 @@ public class DataStorageSelection extends javax.swing.JFrame {
         gridBagConstraints.insets = new java.awt.Insets(12, 24, 12, 24);
         getContentPane().add(fileSerializationCheck, gridBagConstraints);
 
+        binaryFileCheck.setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
+        binaryFileCheck.setText("File (Binary)");
+        binaryFileCheck.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                binaryFileCheckActionPerformed(evt);
+            }
+        });
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 5;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.BOTH;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHWEST;
+        gridBagConstraints.insets = new java.awt.Insets(12, 24, 12, 24);
+        getContentPane().add(binaryFileCheck, gridBagConstraints);
+
         dataBaseSerializationCheck.setFont(new java.awt.Font("Segoe UI", 0, 18)); // NOI18N
         dataBaseSerializationCheck.setText("JPA - Database");
         dataBaseSerializationCheck.addActionListener(new java.awt.event.ActionListener() {
@@ -169,18 +186,28 @@ public class DataStorageSelection extends javax.swing.JFrame {
         });
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 6;
+        gridBagConstraints.gridy = 7;
         gridBagConstraints.fill = java.awt.GridBagConstraints.BOTH;
         gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHWEST;
         gridBagConstraints.insets = new java.awt.Insets(12, 24, 12, 24);
         getContentPane().add(dataBaseSerializationCheck, gridBagConstraints);
 
+        cacheCheck.setFont(new java.awt.Font("Segoe UI", 2, 18)); // NOI18N
+        cacheCheck.setText("Cache reads by NIF");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 8;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.BOTH;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHWEST;
+        gridBagConstraints.insets = new java.awt.Insets(24, 24, 12, 24);
+        getContentPane().add(cacheCheck, gridBagConstraints);
+
         authorMail.setFont(new java.awt.Font("Segoe UI", 2, 8)); // NOI18N
         authorMail.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
         authorMail.setText("Author: francesc.perez@stucom.com - Version 1.1.0");
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 8;
+        gridBagConstraints.gridy = 10;
         gridBagConstraints.fill = java.awt.GridBagConstraints.BOTH;
         gridBagConstraints.insets = new java.awt.Insets(12, 24, 12, 24);
         getContentPane().add(authorMail, gridBagConstraints);
@@ -190,7 +217,7 @@ public class DataStorageSelection extends javax.swing.JFrame {
         accept.setText("Accept");
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 7;
+        gridBagConstraints.gridy = 9;
         gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHWEST;
         gridBagConstraints.insets = new java.awt.Insets(12, 60, 12, 12);
         getContentPane().add(accept, gridBagConstraints);
@@ -204,7 +231,7 @@ public class DataStorageSelection extends javax.swing.JFrame {
         });
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 7;
+        gridBagConstraints.gridy = 9;
         gridBagConstraints.anchor = java.awt.GridBagConstraints.NORTHEAST;
         gridBagConstraints.insets = new java.awt.Insets(12, 12, 12, 60);
         getContentPane().add(cancel, gridBagConstraints);
@@ -226,7 +253,7 @@ public class DataStorageSelection extends javax.swing.JFrame {
         if (jcb.isSelected()) {
             itemSelected = jcb;
             for (Component component : getContentPane().getComponents()) {
-                if (component instanceof javax.swing.JCheckBox && component != jcb) {
+                if (component instanceof javax.swing.JCheckBox && component != jcb && component != cacheCheck) {
                     ((javax.swing.JCheckBox)component).setSelected(false);
                 }
             }
@@ -251,6 +278,15 @@ public class DataStorageSelection extends javax.swing.JFrame {
         return c;
     }
 
+    /**
+     * This method allows the controller to know if the user wants the reads
+     * by NIF of the storage system chosen to be cached.
+     * @return true if the cache checkbox is selected
+     */
+    public boolean isCacheSelected() {
+        return cacheCheck.isSelected();
+    }
+
     private void arrayListCheckActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_arrayListCheckActionPerformed
         JCB(arrayListCheck);
     }//GEN-LAST:event_arrayListCheckActionPerformed
@@ -271,6 +307,10 @@ public class DataStorageSelection extends javax.swing.JFrame {
         JCB(fileSerializationCheck);
     }//GEN-LAST:event_fileSerializationCheckActionPerformed
 
+    private void binaryFileCheckActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_binaryFileCheckActionPerformed
+        JCB(binaryFileCheck);
+    }//GEN-LAST:event_binaryFileCheckActionPerformed
+
     private void dataBaseCheckActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_dataBaseCheckActionPerformed
         JCB(dataBaseCheck);
     }//GEN-LAST:event_dataBaseCheckActionPerformed
@@ -289,6 +329,8 @@ public class DataStorageSelection extends javax.swing.JFrame {
     private javax.swing.JLabel answer;
     private javax.swing.JCheckBox arrayListCheck;
     private javax.swing.JLabel authorMail;
+    private javax.swing.JCheckBox binaryFileCheck;
+    private javax.swing.JCheckBox cacheCheck;
     private javax.swing.JButton cancel;
     private javax.swing.JCheckBox dataBaseCheck;
     private javax.swing.JCheckBox dataBaseSerializationCheck;
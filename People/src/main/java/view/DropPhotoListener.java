@@ -1,6 +1,5 @@
 package view;
 
-import java.awt.Image;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.dnd.DnDConstants;
@@ -10,11 +9,14 @@ import java.awt.dnd.DropTargetEvent;
 import java.awt.dnd.DropTargetListener;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 import org.apache.commons.io.FilenameUtils;
+import utils.ThumbnailCache;
 
 /**
  * @author Francesc Perez
@@ -73,12 +75,34 @@ public class DropPhotoListener implements DropTargetListener {
         }
     }
 
+    /**
+     * Decodes and scales the photo outside the event dispatch thread, with
+     * the bilinear scaling of the thumbnails.
+     */
     private void displayImage(String path) {
-        ImageIcon icon = new ImageIcon(path);
-        Image img = icon.getImage();
-        img = img.getScaledInstance(label.getWidth(), label.getHeight(), Image.SCALE_DEFAULT);
-        icon = new ImageIcon(img);
-        label.setIcon(icon);
+        int width = label.getWidth();
+        int height = label.getHeight();
+        new SwingWorker<ImageIcon, Void>() {
+            @Override
+            protected ImageIcon doInBackground() {
+                ImageIcon icon = new ImageIcon(path);
+                //A photo of the size of the label keeps its file, so it is 
+                //stored without encoding it again
+                if (icon.getIconWidth() != width || icon.getIconHeight() != height) {
+                    icon = new ImageIcon(ThumbnailCache.scale(icon, width, height));
+                }
+                return icon;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    label.setIcon(get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    JOptionPane.showMessageDialog(jDialog, "Photo not loaded: " + ex.getMessage(), jDialog.getTitle(), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
 }
@@ -0,0 +1,199 @@
+package view;
+
+import model.entity.Person;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model of the ReadAll view that reads the people page by page, in NIF
+ * order, while the user scrolls. Pages are read in a background thread; until
+ * a page arrives its rows show "...". Only the last MAX_PAGES pages read are
+ * kept in memory. Pages are read with keyset pagination, so reaching a row far
+ * down the table reads the pages before it once to learn where it starts.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class PersonTableModel extends AbstractTableModel {
+
+    public static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 20;
+    private static final String LOADING = "...";
+    private static final String[] COLUMNS = {
+        "NIF", "Name", "Postal Code", "PhoneNumber", "Email", "Date of Birth", "Photo"
+    };
+
+    /**
+     * Reads a page of people ordered by NIF.
+     */
+    public interface PageLoader {
+
+        /**
+         * @param afterNif NIF of the last person of the previous page, null
+         * for the first page
+         * @param limit size of the page
+         * @return the people of the page
+         */
+        List<Person> load(String afterNif, int limit);
+    }
+
+    private final PageLoader loader;
+    private final int rowCount;
+    //Page number -> people of the page, least recently used first
+    private final LinkedHashMap<Integer, List<Person>> pages = new LinkedHashMap<Integer, List<Person>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Person>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    //lastNifs.get(i) is the NIF of the last person of page i
+    private final ArrayList<String> lastNifs = new ArrayList<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ReadAll-pages");
+        t.setDaemon(true);
+        return t;
+    });
+    //Last page requested and not loaded yet, -1 if none
+    private int requestedPage = -1;
+
+    /**
+     * @param rowCount number of people registered
+     * @param loader reads the pages, called outside the event dispatch thread
+     */
+    public PersonTableModel(int rowCount, PageLoader loader) {
+        this.rowCount = rowCount;
+        this.loader = loader;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int pageNumber = rowIndex / PAGE_SIZE;
+        List<Person> page;
+        synchronized (this) {
+            page = pages.get(pageNumber);
+            if (page == null) {
+                request(pageNumber);
+                return LOADING;
+            }
+        }
+        int i = rowIndex % PAGE_SIZE;
+        if (i >= page.size()) {
+            //Deleted since the table was opened
+            return "";
+        }
+        Person p = page.get(i);
+        switch (columnIndex) {
+            case 0:
+                return p.getNif();
+            case 1:
+                return p.getName();
+            case 2:
+                return p.getPostalCode();
+            case 3:
+                return p.getPhoneNumber();
+            case 4:
+                return p.getEmail();
+            case 5:
+                return p.getDateOfBirth() != null ? p.getDateOfBirth().toString() : "";
+            default:
+                return p.hasPhoto() ? "yes" : "no";
+        }
+    }
+
+    /**
+     * Schedules the load of a page. Only the last page requested is loaded,
+     * the requests of pages the user has scrolled past are dropped.
+     * @param pageNumber
+     */
+    private void request(int pageNumber) {
+        boolean idle = requestedPage == -1;
+        requestedPage = pageNumber;
+        if (idle) {
+            worker.execute(this::loadRequested);
+        }
+    }
+
+    private void loadRequested() {
+        while (true) {
+            int target;
+            int first;
+            String afterNif;
+            synchronized (this) {
+                target = requestedPage;
+                if (pages.containsKey(target)) {
+                    requestedPage = -1;
+                    return;
+                }
+                //First page whose start is known. The pages before the target
+                //are read to find where the target starts.
+                first = Math.min(target, lastNifs.size());
+                afterNif = first == 0 ? null : lastNifs.get(first - 1);
+            }
+            List<Person> page;
+            try {
+                page = loader.load(afterNif, PAGE_SIZE);
+            } catch (RuntimeException ex) {
+                System.out.println("Error reading people: " + ex.getMessage());
+                synchronized (this) {
+                    requestedPage = -1;
+                }
+                return;
+            }
+            int lastPage = first;
+            synchronized (this) {
+                if (first == lastNifs.size() && !page.isEmpty()) {
+                    lastNifs.add(page.get(page.size() - 1).getNif());
+                }
+                pages.put(first, page);
+                if (page.size() < PAGE_SIZE && first < target) {
+                    //There are no more people, the target page is empty
+                    pages.put(target, new ArrayList<>());
+                    lastPage = target;
+                }
+            }
+            int firstRow = first * PAGE_SIZE;
+            int lastRow = Math.min(rowCount, (lastPage + 1) * PAGE_SIZE) - 1;
+            if (firstRow <= lastRow) {
+                SwingUtilities.invokeLater(() -> fireTableRowsUpdated(firstRow, lastRow));
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread. Called when the view is closed.
+     */
+    public void dispose() {
+        worker.shutdownNow();
+    }
+}
@@ -1,5 +1,7 @@
 package view;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import javax.swing.JButton;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -14,13 +16,33 @@ public class ReadAll extends javax.swing.JDialog {
     public ReadAll(java.awt.Frame parent, boolean modal) {
         super(parent, modal);
         initComponents();
+        centerColumns();
+        setLocationRelativeTo(null);
+    }
+
+    private void centerColumns() {
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment((int)JTable.CENTER_ALIGNMENT);
         table.getColumnModel().getColumn(0).setCellRenderer( centerRenderer );
         table.getColumnModel().getColumn(1).setCellRenderer( centerRenderer );
         table.getColumnModel().getColumn(2).setCellRenderer( centerRenderer );
         table.getColumnModel().getColumn(3).setCellRenderer( centerRenderer );
-        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Shows the people of the model, which reads them page by page. The 
+     * model is stopped when the dialog is closed.
+     * @param model 
+     */
+    public void setPeople(PersonTableModel model) {
+        table.setModel(model);
+        centerColumns();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.dispose();
+            }
+        });
     }
 
     public JTable getTable() {
@@ -0,0 +1,259 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import model.dao.ConnectionPool;
+import model.dao.DAOArrayList;
+import model.dao.DAOBinaryFile;
+import model.dao.DAOConcurrentHashMap;
+import model.dao.DAOFile;
+import model.dao.DAOFileSerializable;
+import model.dao.DAOHashMap;
+import model.dao.DAOIntHashMap;
+import model.dao.DAOJPA;
+import model.dao.DAOOffHeap;
+import model.dao.DAOSQL;
+import model.dao.IDAO;
+import model.entity.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import start.Routes;
+import utils.DataValidation;
+import utils.FileManagement;
+
+/**
+ * Measures the operations of every storage system with size people
+ * registered, without any view. DAOSQL runs against an in-memory H2 database
+ * in MySQL mode instead of the MySQL server and DAOJPA against an embedded
+ * ObjectDB file, so no server is needed (see the jvmArgsAppend of @Fork).
+ *
+ * The data of the storage systems is deleted, so it has to run in an empty
+ * folder: the "benchmark" profile runs it in target/benchmark and writes the
+ * results to target/jmh-result.json, the baseline to compare with.
+ * insert and delete change the number of people, so every iteration does
+ * BATCH of them and then restores the people registered. To compare two
+ * backends: -p backend=HashMap,ConcurrentHashMap. The largest size takes
+ * most of the time of the file and database backends; for a quicker run:
+ * -p size=1000,10000
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {
+    "-Dpeople.DB.address=jdbc:h2:mem:people;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "-Dpeople.DB.options=",
+    "-Dpeople.DBO.address=objectdb:people-benchmark.odb"})
+public class DAOBenchmark {
+
+    //People inserted or deleted by every iteration of insert and delete
+    private static final int BATCH = 100;
+    //First NIF of the people inserted and deleted by insert and delete
+    private static final int INSERTED_NIFS = 50_000_000;
+    private static final int DELETED_NIFS = 60_000_000;
+
+    @Param({"ArrayList", "HashMap", "ConcurrentHashMap", "IntHashMap", "OffHeap", "File", "FileSer", "FileBin", "SQL", "JPA"})
+    public String backend;
+
+    //100000 is where the backends that scan or rewrite the whole data set
+    //fall behind the indexed ones
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private IDAO dao;
+    private Person[] people;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (!new File(System.getProperty("user.dir")).getName().equals("benchmark")) {
+            throw new IllegalStateException("DAOBenchmark deletes the data of the storage "
+                    + "systems, run it with mvn -P benchmark verify");
+        }
+        dao = open(backend);
+        dao.deleteAll();
+        people = new Person[size];
+        ArrayList<Person> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            people[i] = person(i);
+            all.add(people[i]);
+        }
+        dao.insertAll(all);
+        new File(FileManagement.DEFAULT_CSV_LOCATION).mkdirs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dao.deleteAll();
+        if (dao instanceof DAOFileSerializable) {
+            ((DAOFileSerializable) dao).close();
+        }
+    }
+
+    /**
+     * Creates the folders and tables of the storage system as the controller
+     * does. Also used by LoadGenerator.
+     * @param backend ArrayList, HashMap, ConcurrentHashMap, IntHashMap, OffHeap,
+     * File, FileSer, FileBin, SQL or JPA
+     */
+    static IDAO open(String backend) throws Exception {
+        switch (backend) {
+            case "ArrayList":
+                return new DAOArrayList();
+            case "HashMap":
+                return new DAOHashMap();
+            case "ConcurrentHashMap":
+                return new DAOConcurrentHashMap();
+            case "IntHashMap":
+                return new DAOIntHashMap();
+            case "OffHeap":
+                return new DAOOffHeap();
+            case "File":
+                createFiles(Routes.FILE, true);
+                return new DAOFile(DAOFile.DEFAULT_COMPACTION_RATIO);
+            case "FileSer":
+                createFiles(Routes.FILES, true);
+                return new DAOFileSerializable();
+            case "FileBin":
+                createFiles(Routes.FILEB, false);
+                return new DAOBinaryFile();
+            case "SQL":
+                createFiles(Routes.DB, false);
+                try (Connection conn = ConnectionPool.get(Routes.DB).getConnection();
+                        Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("create schema if not exists " + Routes.DB.getDbServerDB());
+                    stmt.executeUpdate("create table if not exists " + Routes.DB.getDbServerDB() + "." + Routes.DB.getDbServerTABLE() + "("
+                            + "nif varchar(9) primary key not null, "
+                            + "name varchar(50), "
+                            + "postalCode varchar(50), "
+                            + "phoneNumber varchar(50),"
+                            + "email varchar(255), "
+                            + "dateOfBirth DATE, "
+                            + "photo varchar(200) )");
+                }
+                return new DAOSQL();
+            case "JPA":
+                return new DAOJPA();
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    private static void createFiles(Routes route, boolean dataFile) throws IOException {
+        new File(route.getFolderPhotos()).mkdirs();
+        if (dataFile) {
+            new File(route.getDataFile()).createNewFile();
+        }
+    }
+
+    private static Person person(int i) {
+        return new Person("Name " + i, DataValidation.calculateNifLetter(String.format("%08d", i)), "08001",
+                "600000000", "person" + i + "@mail.com", new Date(i * 86400000L), null);
+    }
+
+    private Person nextPerson() {
+        Person p = people[next];
+        next = (next + 1) % size;
+        return p;
+    }
+
+    @Benchmark
+    public Person read() throws Exception {
+        return dao.read(new Person(nextPerson().getNif()));
+    }
+
+    @Benchmark
+    public void update() throws Exception {
+        Person p = nextPerson();
+        dao.update(new Person(p.getName() + "*", p.getNif(), p.getPostalCode(),
+                p.getPhoneNumber(), p.getEmail(), p.getDateOfBirth(), null));
+    }
+
+    @Benchmark
+    public ArrayList<Person> readAll() throws Exception {
+        return dao.readAll();
+    }
+
+    @Benchmark
+    public int count() throws Exception {
+        return dao.count();
+    }
+
+    @Benchmark
+    public void exportToCsv() throws Exception {
+        dao.exportToCsv();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = BATCH)
+    @Measurement(iterations = 5, batchSize = BATCH)
+    public void insert(Inserted inserted) throws Exception {
+        Person p = person(INSERTED_NIFS + inserted.nifs.size());
+        dao.insert(p);
+        inserted.nifs.add(p.getNif());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = BATCH)
+    @Measurement(iterations = 5, batchSize = BATCH)
+    public void delete(ToDelete toDelete) throws Exception {
+        dao.delete(toDelete.people.poll());
+    }
+
+    /**
+     * NIFs inserted by the current iteration of insert, deleted after it.
+     */
+    @State(Scope.Benchmark)
+    public static class Inserted {
+
+        private final ArrayList<String> nifs = new ArrayList<>();
+
+        @TearDown(Level.Iteration)
+        public void deleteInserted(DAOBenchmark benchmark) throws Exception {
+            benchmark.dao.deleteAll(nifs);
+            nifs.clear();
+        }
+    }
+
+    /**
+     * BATCH people inserted before every iteration of delete.
+     */
+    @State(Scope.Benchmark)
+    public static class ToDelete {
+
+        private final ArrayDeque<Person> people = new ArrayDeque<>();
+
+        @Setup(Level.Iteration)
+        public void insertBatch(DAOBenchmark benchmark) throws Exception {
+            people.clear();
+            ArrayList<Person> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(person(DELETED_NIFS + i));
+            }
+            benchmark.dao.insertAll(batch);
+            people.addAll(batch);
+        }
+    }
+}
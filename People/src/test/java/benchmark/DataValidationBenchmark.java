@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import model.entity.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import utils.DataValidation;
+
+/**
+ * Compares the validators of previous versions (String.matches, which
+ * compiles the regular expression on every call, and a new array of letters
+ * per NIF) with the current ones, over the fields of 1000 people. Run with
+ * -prof gc to see the allocation rate.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataValidationBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private ArrayList<Person> people;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        people = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            String postalCode = i % 2 == 0 ? "08001" : "08001-1234";
+            String phone = i % 3 == 0 ? "+34 600 000 " + String.format("%03d", i % 1000) : "600000000";
+            people.add(new Person("Name", DataValidation.calculateNifLetter(String.format("%08d", i)),
+                    postalCode, phone, "person" + i + "@mail.com"));
+        }
+    }
+
+    @Benchmark
+    public void regexValidators(Blackhole bh) {
+        for (Person p : people) {
+            bh.consume(p.getPostalCode().matches(DataValidation.POSTAL_CODE_REGEX));
+            bh.consume(p.getPhoneNumber().matches(DataValidation.PHONE_NUMBER_REGEX));
+            bh.consume(p.getEmail().matches(DataValidation.EMAIL_REGEX));
+        }
+    }
+
+    @Benchmark
+    public void scannerValidators(Blackhole bh) {
+        for (Person p : people) {
+            bh.consume(DataValidation.validPostalCode(p.getPostalCode()));
+            bh.consume(DataValidation.validPhoneNumber(p.getPhoneNumber()));
+            bh.consume(DataValidation.validEmail(p.getEmail()));
+        }
+    }
+
+    @Benchmark
+    public void nifLetterArray(Blackhole bh) {
+        for (Person p : people) {
+            String[] letter = {"T", "R", "W", "A", "G", "M", "Y", "F", "P", "D", "X", "B",
+                "N", "J", "Z", "S", "Q", "V", "H", "L", "C", "K", "E"};
+            String number = p.getNif().substring(0, 8);
+            bh.consume((number + letter[Integer.parseInt(number) % 23]).equals(p.getNif()));
+        }
+    }
+
+    @Benchmark
+    public void nifScanner(Blackhole bh) {
+        for (Person p : people) {
+            bh.consume(DataValidation.validNif(p.getNif()));
+        }
+    }
+
+    @Benchmark
+    public Object validateAll() {
+        return DataValidation.validateAll(people);
+    }
+}
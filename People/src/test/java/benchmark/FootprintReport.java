@@ -0,0 +1,53 @@
+package benchmark;
+
+import java.util.Date;
+import java.util.Locale;
+import model.dao.DAOArrayList;
+import model.dao.DAOConcurrentHashMap;
+import model.dao.DAOHashMap;
+import model.dao.DAOIntHashMap;
+import model.dao.DAOOffHeap;
+import model.dao.IDAO;
+import model.entity.Person;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+import utils.DataValidation;
+
+/**
+ * Prints the heap used per person by the storage systems in memory, measured
+ * with JOL walking every object reachable from the DAO, and the direct
+ * memory of DAOOffHeap, which JOL does not see. The argument is the
+ * number of people (1000000):
+ *
+ *   mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *       -Dexec.args="-Xmx4g -classpath %classpath benchmark.FootprintReport 1000000"
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class FootprintReport {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println(VM.current().details());
+        report("DAOArrayList", new DAOArrayList(), size);
+        report("DAOHashMap", new DAOHashMap(), size);
+        report("DAOConcurrentHashMap", new DAOConcurrentHashMap(), size);
+        report("DAOIntHashMap", new DAOIntHashMap(), size);
+        DAOOffHeap offHeap = new DAOOffHeap();
+        report("DAOOffHeap", offHeap, size);
+        System.out.println(String.format(Locale.ROOT, "%-22s off heap: %,d bytes, %.1f bytes/person",
+                "DAOOffHeap", offHeap.getOffHeapBytes(), (double) offHeap.getOffHeapBytes() / size));
+    }
+
+    private static void report(String name, IDAO dao, int size) throws Exception {
+        for (int i = 0; i < size; i++) {
+            //Every person has its own Strings, as when they are read from a file
+            dao.insert(new Person("Name " + i, DataValidation.calculateNifLetter(String.format("%08d", i)),
+                    new String("08001"), new String("600000000"), "person" + i + "@mail.com",
+                    new Date(i * 86400000L), null));
+        }
+        GraphLayout layout = GraphLayout.parseInstance(dao);
+        System.out.println(String.format(Locale.ROOT, "%-22s %,d people: %,d bytes, %,d objects, %.1f bytes/person",
+                name, size, layout.totalSize(), layout.totalCount(), (double) layout.totalSize() / size));
+    }
+}
@@ -0,0 +1,274 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import model.dao.InstrumentedDAO;
+import model.dao.OperationMetrics;
+import model.entity.Person;
+import utils.DataValidation;
+import utils.FileManagement;
+import utils.LatencyHistogram;
+
+/**
+ * Headless load generator and soak test of a storage system. Several threads
+ * call the IDAO (the controller shows dialogs) with a mix of operations at a
+ * target rate during a given time, and the throughput, latency percentiles
+ * and errors of every operation are printed every report seconds and at the
+ * end (InstrumentedDAO). Arguments, all optional, as name=value:
+ *
+ *   backend  ArrayList, HashMap, ConcurrentHashMap, IntHashMap, OffHeap, File,
+ *            FileSer, FileBin, SQL or JPA (ConcurrentHashMap)
+ *   mix      READ_HEAVY, WRITE_HEAVY, READ_ALL or EXPORT (READ_HEAVY)
+ *   threads  threads calling the storage system (8)
+ *   rate     operations per second of all the threads, 0 as fast as
+ *            possible (1000)
+ *   seconds  duration of the run (60)
+ *   people   people registered before the run (10000)
+ *   report   seconds between two reports (10)
+ *
+ * ArrayList, HashMap, IntHashMap and OffHeap are used by a single thread, as
+ * in the application, so they are rejected with more than one thread:
+ * several threads would race on their collections and the results would be
+ * meaningless. Run them with threads=1.
+ *
+ * The rate is kept by scheduling every operation at a fixed time: the
+ * response time is measured from that time, so a storage system that falls
+ * behind the rate shows up in the percentiles (no coordinated omission). As
+ * DAOBenchmark, it deletes the data of the storage system, so it is run in
+ * target/benchmark: mvn -P soak verify -Dsoak.args="backend=File seconds=3600"
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+public class LoadGenerator {
+
+    /**
+     * Weights of read, insert, update, delete, readAll, count and exportToCsv.
+     */
+    public enum Mix {
+        READ_HEAVY(90, 3, 5, 2, 0, 0, 0),
+        WRITE_HEAVY(20, 40, 30, 10, 0, 0, 0),
+        READ_ALL(40, 5, 5, 5, 40, 5, 0),
+        EXPORT(45, 5, 5, 5, 0, 30, 10);
+
+        private final int[] weights;
+
+        private Mix(int... weights) {
+            this.weights = weights;
+        }
+
+        private int pick(int random) {
+            int total = 0;
+            for (int w : weights) {
+                total += w;
+            }
+            int r = random % total;
+            for (int i = 0; i < weights.length; i++) {
+                r -= weights[i];
+                if (r < 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    //Backends that are not thread-safe
+    private static final Set<String> SINGLE_THREADED = Set.of("ArrayList", "HashMap", "IntHashMap", "OffHeap");
+
+    private static final int READ = 0, INSERT = 1, UPDATE = 2, DELETE = 3,
+            READ_ALL = 4, COUNT = 5, EXPORT = 6;
+
+    private final InstrumentedDAO dao;
+    private final Mix mix;
+    private final int threads;
+    private final long rate;
+    private final long seconds;
+    private final int people;
+    //Response time, from the time an operation was scheduled to its end
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    //Numbers of the NIFs inserted by the run, the only ones it deletes
+    private final AtomicInteger nextNumber;
+    private final ConcurrentLinkedQueue<Integer> inserted = new ConcurrentLinkedQueue<>();
+
+    public LoadGenerator(InstrumentedDAO dao, Mix mix, int threads, long rate, long seconds, int people) {
+        this.dao = dao;
+        this.mix = mix;
+        this.threads = threads;
+        this.rate = rate;
+        this.seconds = seconds;
+        this.people = people;
+        this.nextNumber = new AtomicInteger(people);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        if (!new File(System.getProperty("user.dir")).getName().equals("benchmark")) {
+            throw new IllegalStateException("LoadGenerator deletes the data of the storage "
+                    + "systems, run it with mvn -P soak verify");
+        }
+        String backend = options.getOrDefault("backend", "ConcurrentHashMap");
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        if (threads > 1 && SINGLE_THREADED.contains(backend)) {
+            throw new IllegalArgumentException(backend + " is not thread-safe, run it with threads=1");
+        }
+        long report = Long.parseLong(options.getOrDefault("report", "10"));
+        InstrumentedDAO dao = new InstrumentedDAO(DAOBenchmark.open(backend), report);
+        LoadGenerator generator = new LoadGenerator(dao,
+                Mix.valueOf(options.getOrDefault("mix", "READ_HEAVY")),
+                threads,
+                Long.parseLong(options.getOrDefault("rate", "1000")),
+                Long.parseLong(options.getOrDefault("seconds", "60")),
+                Integer.parseInt(options.getOrDefault("people", "10000")));
+        generator.load();
+        generator.run();
+        System.out.println(generator.getReport());
+        dao.close();
+        dao.deleteAll();
+        System.exit(0);
+    }
+
+    /**
+     * Deletes the people registered and registers the synthetic ones.
+     * @throws Exception
+     */
+    public void load() throws Exception {
+        dao.deleteAll();
+        ArrayList<Person> all = new ArrayList<>(people);
+        for (int i = 0; i < people; i++) {
+            all.add(person(i));
+        }
+        dao.insertAll(all);
+        new File(FileManagement.DEFAULT_CSV_LOCATION).mkdirs();
+        dao.reset();
+    }
+
+    /**
+     * Runs the mix of operations during the given seconds.
+     * @throws InterruptedException
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        //Every thread does one operation every interval nanoseconds
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(threads) / rate : 0;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long first = start + (interval * t) / threads;
+            workers[t] = new Thread(() -> work(first, interval, end), "LoadGenerator-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void work(long first, long interval, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long scheduled = first;
+        while (scheduled < end) {
+            if (interval == 0) {
+                scheduled = System.nanoTime();
+            }
+            long now;
+            while ((now = System.nanoTime()) < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            try {
+                call(mix.pick(random.nextInt(Integer.MAX_VALUE)), random);
+            } catch (Exception ex) {
+                //Counted by InstrumentedDAO by type, the run goes on
+                errors.increment();
+            }
+            responseTimes.record(System.nanoTime() - scheduled);
+            operations.increment();
+            scheduled += interval;
+        }
+    }
+
+    private void call(int operation, ThreadLocalRandom random) throws Exception {
+        switch (operation) {
+            case READ ->
+                dao.read(new Person(nif(random.nextInt(people))));
+            case INSERT -> {
+                int number = nextNumber.getAndIncrement();
+                dao.insert(person(number));
+                inserted.add(number);
+            }
+            case UPDATE -> {
+                Person p = person(random.nextInt(people));
+                p.setName(p.getName() + " " + random.nextInt(100));
+                dao.update(p);
+            }
+            case DELETE -> {
+                Integer number = inserted.poll();
+                if (number != null) {
+                    dao.delete(new Person(nif(number)));
+                } else {
+                    dao.read(new Person(nif(random.nextInt(people))));
+                }
+            }
+            case READ_ALL ->
+                dao.readAll();
+            case COUNT ->
+                dao.count();
+            case EXPORT ->
+                dao.exportToCsv();
+        }
+    }
+
+    /**
+     * @param number
+     * @return valid NIF of the number
+     */
+    private static String nif(int number) {
+        return DataValidation.calculateNifLetter(String.format("%08d", number));
+    }
+
+    private static Person person(int number) {
+        return new Person("Name " + number, nif(number), "08001", "600000000",
+                "person" + number + "@mail.com", new Date(number * 86400000L), null);
+    }
+
+    /**
+     * @return throughput and response times of the whole run, followed by the
+     * metrics of every operation
+     */
+    public String getReport() {
+        long total = operations.sum();
+        long failed = errors.sum();
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%s %s, %d threads, target %d/s: %d operations in %ds, %.1f/s, errors = %d (%.3f%%)"
+                + "\n  response time: p50 = %dus, p99 = %dus, p999 = %dus, max = %dus",
+                dao.getBackend(), mix, threads, rate, total, seconds, (double) total / seconds,
+                failed, total == 0 ? 0 : 100.0 * failed / total,
+                responseTimes.getPercentile(50) / 1000, responseTimes.getPercentile(99) / 1000,
+                responseTimes.getPercentile(99.9) / 1000, responseTimes.getMax() / 1000));
+        for (Map.Entry<String, OperationMetrics> operation : dao.getOperations().entrySet()) {
+            report.append("\n  ").append(operation.getKey()).append(": ").append(operation.getValue());
+        }
+        if (!dao.getErrorsByType().isEmpty()) {
+            report.append("\n  errors: ").append(dao.getErrorsByType());
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import model.dao.LegacyPerson;
+import model.entity.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the default Java serialization of Person used by previous versions
+ * (written through LegacyPerson) with the Externalizable format, writing and
+ * reading a whole "dataFile.ser" in memory.
+ * @author Francesc Perez
+ * @version 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersonSerializationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private ArrayList<Person> people;
+    private byte[] legacyFile;
+    private byte[] externalFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        people = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            people.add(new Person("Name " + i, String.format("%08dZ", i), "08001",
+                    "600000000", "person" + i + "@mail.com", new Date(i * 86400000L), null));
+        }
+        legacyFile = writeLegacy();
+        externalFile = writeExternal();
+    }
+
+    @Benchmark
+    public byte[] writeLegacy() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            for (Person p : people) {
+                oos.writeObject(new LegacyPerson(p));
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] writeExternal() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            for (Person p : people) {
+                oos.writeObject(p);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public void readLegacy(Blackhole bh) throws IOException, ClassNotFoundException {
+        read(legacyFile, bh);
+    }
+
+    @Benchmark
+    public void readExternal(Blackhole bh) throws IOException, ClassNotFoundException {
+        read(externalFile, bh);
+    }
+
+    private void read(byte[] file, Blackhole bh) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(file))) {
+            while (true) {
+                bh.consume(ois.readObject());
+            }
+        } catch (EOFException ex) {
+            //End of the file
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.entity.Person;
+
+class CachingDAOTest {
+
+    private static final long LONG_TTL = TimeUnit.MINUTES.toNanos(10);
+    private static final long SHORT_TTL = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * Storage system that counts the reads and counts it answers. Writes to
+     * it directly are the writes of another program.
+     */
+    private static class CountingDAO extends DAOHashMap {
+
+        private int reads;
+        private int counts;
+
+        @Override
+        public Person read(Person p) {
+            reads++;
+            return super.read(p);
+        }
+
+        @Override
+        public int count() {
+            counts++;
+            return super.count();
+        }
+    }
+
+    private CountingDAO storage;
+    private CachingDAO dao;
+
+    @BeforeEach
+    void setUp() {
+        storage = new CountingDAO();
+        dao = new CachingDAO(storage, 100, LONG_TTL, LONG_TTL);
+    }
+
+    @Test
+    void testReadIsCached() throws Exception {
+        storage.insert(person(1));
+        assertEquals("Name 1", dao.read(person(1)).getName());
+        assertEquals("Name 1", dao.read(person(1)).getName());
+        assertNull(dao.read(person(2)));
+        assertNull(dao.read(person(2)));
+        assertEquals(2, storage.reads);
+        assertEquals(2, dao.getHits());
+        assertEquals(2, dao.getMisses());
+    }
+
+    @Test
+    void testEveryWriteInvalidatesTheNif() throws Exception {
+        dao.read(person(1));
+        dao.insert(person(1));
+        assertEquals("Name 1", dao.read(person(1)).getName());
+        dao.update(person(1, "Update"));
+        assertEquals("Update", dao.read(person(1)).getName());
+        dao.updateAll(List.of(person(1, "UpdateAll")));
+        assertEquals("UpdateAll", dao.read(person(1)).getName());
+        dao.delete(person(1));
+        assertNull(dao.read(person(1)));
+        assertEquals(WriteOutcome.INSERTED, dao.insertIfAbsent(person(1, "InsertIfAbsent")));
+        assertEquals("InsertIfAbsent", dao.read(person(1)).getName());
+        assertEquals(WriteOutcome.DELETED, dao.deleteIfPresent(person(1)));
+        assertNull(dao.read(person(1)));
+        dao.insertAll(List.of(person(1, "InsertAll")));
+        assertEquals("InsertAll", dao.read(person(1)).getName());
+        dao.deleteAll(List.of(person(1).getNif()));
+        assertNull(dao.read(person(1)));
+        dao.insert(person(1));
+        dao.read(person(1));
+        dao.deleteAll();
+        assertEquals(0, dao.size());
+        assertNull(dao.read(person(1)));
+    }
+
+    @Test
+    void testNegativeEntriesExpire() throws Exception {
+        dao = new CachingDAO(storage, 100, LONG_TTL, SHORT_TTL);
+        assertNull(dao.read(person(1)));
+        storage.insert(person(1));
+        assertNull(dao.read(person(1)));
+        TimeUnit.NANOSECONDS.sleep(2 * SHORT_TTL);
+        assertEquals("Name 1", dao.read(person(1)).getName());
+    }
+
+    @Test
+    void testPositiveEntriesExpire() throws Exception {
+        dao = new CachingDAO(storage, 100, SHORT_TTL, LONG_TTL);
+        storage.insert(person(1));
+        assertEquals("Name 1", dao.read(person(1)).getName());
+        storage.update(person(1, "Written by another program"));
+        assertEquals("Name 1", dao.read(person(1)).getName());
+        TimeUnit.NANOSECONDS.sleep(2 * SHORT_TTL);
+        assertEquals("Written by another program", dao.read(person(1)).getName());
+    }
+
+    @Test
+    void testCountIsKeptByTheWrites() throws Exception {
+        storage.insert(person(1));
+        assertEquals(1, dao.count());
+        assertEquals(WriteOutcome.INSERTED, dao.insertIfAbsent(person(2)));
+        assertEquals(WriteOutcome.ALREADY_REGISTERED, dao.insertIfAbsent(person(2)));
+        assertEquals(2, dao.count());
+        assertEquals(WriteOutcome.DELETED, dao.deleteIfPresent(person(1)));
+        assertEquals(WriteOutcome.NOT_REGISTERED, dao.deleteIfPresent(person(1)));
+        assertEquals(1, dao.count());
+        assertEquals(1, storage.counts);
+        dao.insertAll(List.of(person(3), person(4)));
+        assertEquals(3, dao.count());
+        assertEquals(2, storage.counts);
+        dao.deleteAll();
+        assertEquals(0, dao.count());
+        assertEquals(2, storage.counts);
+    }
+
+    @Test
+    void testCountExpires() throws Exception {
+        dao = new CachingDAO(storage, 100, SHORT_TTL, SHORT_TTL);
+        assertEquals(0, dao.count());
+        storage.insert(person(1));
+        assertEquals(0, dao.count());
+        TimeUnit.NANOSECONDS.sleep(2 * SHORT_TTL);
+        assertEquals(1, dao.count());
+        assertEquals(2, storage.counts);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws Exception {
+        dao = new CachingDAO(storage, 2, LONG_TTL, LONG_TTL);
+        for (int i = 0; i < 3; i++) {
+            storage.insert(person(i));
+        }
+        dao.read(person(0));
+        dao.read(person(1));
+        dao.read(person(0));
+        dao.read(person(2));
+        assertEquals(2, dao.size());
+        assertEquals(1, dao.getEvictions());
+        //1 was the least recently used
+        dao.read(person(0));
+        dao.read(person(1));
+        assertEquals(2, dao.getHits());
+        assertEquals(4, dao.getMisses());
+        assertEquals(2, dao.getEvictions());
+    }
+}
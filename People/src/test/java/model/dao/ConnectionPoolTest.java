@@ -0,0 +1,133 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Works on in-memory H2 databases, one per test.
+ */
+class ConnectionPoolTest {
+
+    private static final long IDLE_TIMEOUT = 60_000;
+
+    private static String url(String database) {
+        return "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static ConnectionPool pool(String database, int size, long idleTimeoutMillis) {
+        return new ConnectionPool(url(database), "sa", "", size, idleTimeoutMillis, 100);
+    }
+
+    @Test
+    void testBorrowTimesOutWhenExhausted() throws Exception {
+        ConnectionPool pool = pool("timeout", 1, IDLE_TIMEOUT);
+        try {
+            Connection first = pool.getConnection();
+            assertThrows(SQLException.class, pool::getConnection);
+            assertEquals(1, pool.getTimeouts());
+            first.close();
+            try (Connection again = pool.getConnection()) {
+                assertEquals(1, pool.getActiveConnections());
+            }
+            assertEquals(1, pool.getConnectionsCreated());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testCloseGivesTheConnectionBackOnce() throws Exception {
+        ConnectionPool pool = pool("close", 2, IDLE_TIMEOUT);
+        try {
+            Connection conn = pool.getConnection();
+            conn.close();
+            conn.close();
+            assertTrue(conn.isClosed());
+            assertThrows(SQLException.class, conn::createStatement);
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(1, pool.getIdleConnections());
+            //The second close() did not release another permit
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+            assertThrows(SQLException.class, pool::getConnection);
+            first.close();
+            second.close();
+            assertEquals(2, pool.getConnectionsCreated());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testGiveBackRollsBack() throws Exception {
+        ConnectionPool pool = pool("rollback", 1, IDLE_TIMEOUT);
+        try {
+            try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE person (nif VARCHAR(9))");
+                conn.setAutoCommit(false);
+                stmt.executeUpdate("INSERT INTO person VALUES ('00000000T')");
+            }
+            //The pool has a single connection, the same one is borrowed again
+            try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM person")) {
+                assertTrue(conn.getAutoCommit());
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            assertEquals(1, pool.getConnectionsCreated());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testIdleConnectionsAreEvicted() throws Exception {
+        ConnectionPool pool = pool("evict", 2, 50);
+        try {
+            pool.getConnection().close();
+            assertEquals(1, pool.getIdleConnections());
+            Thread.sleep(100);
+            pool.evictIdle();
+            assertEquals(0, pool.getIdleConnections());
+            assertEquals(1, pool.getIdleEvictions());
+            assertEquals(1, pool.getConnectionsDestroyed());
+            //Expired connections are not borrowed either
+            pool.getConnection().close();
+            Thread.sleep(100);
+            pool.getConnection().close();
+            assertEquals(2, pool.getIdleEvictions());
+            assertEquals(3, pool.getConnectionsCreated());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testRoutesOfTheSameServerShareThePool() throws Exception {
+        //DB and LOGIN of the same server, user and options
+        ConnectionPool db = ConnectionPool.get(url("shared"), "sa", "", 10, IDLE_TIMEOUT);
+        ConnectionPool login = ConnectionPool.get(url("shared"), "sa", "", 2, IDLE_TIMEOUT);
+        try {
+            assertSame(db, login);
+            assertEquals(10, login.getMaxSize());
+            ConnectionPool grown = ConnectionPool.get(url("shared"), "sa", "", 12, IDLE_TIMEOUT);
+            assertSame(db, grown);
+            assertEquals(12, db.getMaxSize());
+            Connection[] borrowed = new Connection[12];
+            for (int i = 0; i < borrowed.length; i++) {
+                borrowed[i] = db.getConnection();
+            }
+            assertEquals(12, db.getActiveConnections());
+            for (Connection conn : borrowed) {
+                conn.close();
+            }
+            assertNotSame(db, ConnectionPool.get(url("shared"), "other", "", 2, IDLE_TIMEOUT));
+        } finally {
+            ConnectionPool.closeAll();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import model.entity.Person;
+
+class DAOArrayListTest {
+
+    private DAOArrayList dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new DAOArrayList();
+    }
+
+    private static List<String> nifs(List<Person> people) {
+        List<String> nifs = new ArrayList<>();
+        for (Person p : people) {
+            nifs.add(p.getNif());
+        }
+        return nifs;
+    }
+
+    @Test
+    void testDeletesKeepInsertionOrderAcrossCompaction() {
+        List<Person> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            dao.insert(person(i));
+            expected.add(person(i));
+        }
+        //Deletes 75 of 100, compacting the list at least once
+        for (int i = 0; i < 100; i++) {
+            if (i % 4 != 0) {
+                assertEquals(WriteOutcome.DELETED, dao.deleteIfPresent(person(i)));
+                expected.remove(person(i));
+            }
+        }
+        assertEquals(nifs(expected), nifs(dao.readAll()));
+        assertEquals(25, dao.count());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 4 == 0, dao.read(person(i)) != null);
+        }
+        dao.insert(person(1));
+        expected.add(person(1));
+        assertEquals(nifs(expected), nifs(dao.readAll()));
+        assertEquals(person(1).getNif(), dao.readPage(null, 2).get(1).getNif());
+    }
+
+    @Test
+    void testNifsWithTheSameHashCodeAreDifferentPeople() {
+        //"Aa" and "BB" have the same String.hashCode()
+        assertEquals(WriteOutcome.INSERTED, dao.insertIfAbsent(new Person("Aa")));
+        assertEquals(WriteOutcome.INSERTED, dao.insertIfAbsent(new Person("BB")));
+        assertEquals(WriteOutcome.ALREADY_REGISTERED, dao.insertIfAbsent(new Person("Aa")));
+        assertEquals(2, dao.count());
+        dao.delete(new Person("Aa"));
+        assertNull(dao.read(new Person("Aa")));
+        assertEquals("BB", dao.read(new Person("BB")).getNif());
+    }
+
+    @Test
+    void testUpdateReplacesInPlace() {
+        dao.insertAll(List.of(person(1), person(2), person(3)));
+        Person updated = person(2);
+        updated.setName("Updated");
+        dao.update(updated);
+        dao.update(person(4));
+        assertEquals("Updated", dao.read(person(2)).getName());
+        assertEquals(List.of(person(1).getNif(), person(2).getNif(), person(3).getNif()), nifs(dao.readAll()));
+        assertEquals(3, dao.count());
+    }
+}
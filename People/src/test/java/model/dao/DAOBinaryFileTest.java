@@ -0,0 +1,114 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.names;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import javax.swing.ImageIcon;
+import model.entity.Person;
+import start.Routes;
+
+/**
+ * Works on the FileBin folder of the working directory, which surefire sets
+ * to target/test-run.
+ */
+class DAOBinaryFileTest {
+
+    private DAOBinaryFile dao;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (!new File(System.getProperty("user.dir")).getName().equals("test-run")) {
+            throw new IllegalStateException("DAOBinaryFileTest deletes the data of the binary file, "
+                    + "run it with mvn test");
+        }
+        new File(Routes.FILEB.getFolderPhotos()).mkdirs();
+        dao = new DAOBinaryFile();
+        dao.deleteAll();
+    }
+
+    @Test
+    void testInsertAgainReplacesTheRecord() throws Exception {
+        dao.insert(person(1, "First"));
+        dao.insert(person(2, "Second"));
+        dao.insert(person(1, "First again"));
+        assertEquals(2, dao.count());
+        assertEquals("First again", dao.read(person(1, null)).getName());
+        assertEquals(List.of("Second", "First again"), names(dao.readAll()));
+    }
+
+    @Test
+    void testInsertAgainReleasesThePhoto() throws Exception {
+        Person withPhoto = person(1, "Photo");
+        withPhoto.setPhoto(new ImageIcon(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB)));
+        dao.insert(withPhoto);
+        dao.insert(person(1, "No photo"));
+        assertFalse(dao.read(person(1, null)).hasPhoto());
+        assertFalse(dao.readAll().get(0).hasPhoto());
+    }
+
+    @Test
+    void testDeleteAfterInsertAgain() throws Exception {
+        dao.insert(person(1, "First"));
+        dao.insert(person(1, "First again"));
+        dao.delete(person(1, null));
+        assertEquals(0, dao.count());
+        assertNull(dao.read(person(1, null)));
+        assertTrue(dao.readAll().isEmpty());
+    }
+
+    @Test
+    void testUpdateIsAppended() throws Exception {
+        File file = new File(Routes.FILEB.getDataFile());
+        dao.insert(person(1, "Same"));
+        dao.insert(person(2, "Second"));
+        long length = file.length();
+        //Same size, the record is not overwritten in place either
+        dao.update(person(1, "Size"));
+        assertTrue(file.length() > length);
+        assertEquals(2, dao.count());
+        assertEquals(List.of("Second", "Size"), names(new DAOBinaryFile().readAll()));
+    }
+
+    @Test
+    void testReopenRebuildsTheIndex() throws Exception {
+        dao.insert(person(1, "First"));
+        dao.insert(person(2, "Second"));
+        dao.insert(person(1, "First again"));
+        dao.insert(person(3, "Third"));
+        dao.delete(person(2, null));
+        DAOBinaryFile reopened = new DAOBinaryFile();
+        assertEquals(2, reopened.count());
+        assertEquals("First again", reopened.read(person(1, null)).getName());
+        assertNull(reopened.read(person(2, null)));
+        assertEquals(List.of("First again", "Third"), names(reopened.readAll()));
+    }
+
+    @Test
+    void testCompactionReclaimsReplacedRecords() throws Exception {
+        File file = new File(Routes.FILEB.getDataFile());
+        for (int i = 0; i < 100; i++) {
+            dao.insert(person(i, "Name 0"));
+        }
+        long records = file.length() - DAOBinaryFile.HEADER_SIZE;
+        for (int round = 1; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                dao.insert(person(i, "Name " + round));
+            }
+            //The replaced records never take more space than the live ones
+            assertTrue(file.length() <= DAOBinaryFile.HEADER_SIZE + 2 * records);
+        }
+        for (int i = 0; i < 90; i++) {
+            dao.delete(person(i, null));
+        }
+        assertTrue(file.length() <= DAOBinaryFile.HEADER_SIZE + 2 * records / 10);
+        DAOBinaryFile reopened = new DAOBinaryFile();
+        assertEquals(10, reopened.count());
+        assertEquals(10, reopened.readAll().size());
+        assertEquals("Name 9", reopened.read(person(95, null)).getName());
+    }
+}
@@ -0,0 +1,149 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import model.entity.Person;
+
+/**
+ * Stress tests of DAOConcurrentHashMap: several threads write the same NIFs
+ * at the same time while others read all the people.
+ */
+class DAOConcurrentHashMapTest {
+
+    private static final int THREADS = 8;
+    private static final int NIFS = 2000;
+
+    private DAOConcurrentHashMap dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new DAOConcurrentHashMap();
+    }
+
+    /**
+     * Runs the task in THREADS threads started at the same time and returns
+     * their results.
+     */
+    private static <T> List<T> concurrently(Callable<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testInsertIfAbsentRegistersEveryNifOnce() throws Exception {
+        List<Integer> inserted = concurrently(() -> {
+            int n = 0;
+            for (int i = 0; i < NIFS; i++) {
+                if (dao.insertIfAbsent(person(i)) == WriteOutcome.INSERTED) {
+                    n++;
+                }
+            }
+            return n;
+        });
+        assertEquals(NIFS, inserted.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(NIFS, dao.count());
+        assertEquals(NIFS, dao.readAll().size());
+    }
+
+    @Test
+    void testCountStaysRightWithConcurrentInsertsAndDeletes() throws Exception {
+        concurrently(() -> {
+            for (int i = 0; i < NIFS; i++) {
+                dao.insert(person(i));
+                dao.deleteIfPresent(person((i * 7) % NIFS));
+                dao.insertAll(List.of(person(i), person(NIFS - 1 - i)));
+                dao.deleteAll(List.of(person(i / 2).getNif()));
+            }
+            return null;
+        });
+        assertEquals(dao.readAll().size(), dao.count());
+        concurrently(() -> {
+            dao.deleteAll();
+            return null;
+        });
+        assertEquals(0, dao.count());
+        assertTrue(dao.readAll().isEmpty());
+    }
+
+    @Test
+    void testReadAllWhileWriting() throws Exception {
+        for (int i = 0; i < NIFS; i++) {
+            dao.insert(person(i));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int round = 0; writing.get(); round++) {
+                for (int i = NIFS; i < 2 * NIFS; i++) {
+                    if (round % 2 == 0) {
+                        dao.insert(person(i));
+                    } else {
+                        dao.delete(person(i));
+                    }
+                    dao.update(person(i - NIFS));
+                }
+            }
+        });
+        writer.start();
+        try {
+            concurrently(() -> {
+                for (int i = 0; i < 50; i++) {
+                    //The people registered before and not deleted are always seen
+                    int all = dao.readAll().size();
+                    assertTrue(all >= NIFS && all <= 2 * NIFS, "readAll: " + all);
+                    try (Stream<Person> people = dao.readStream()) {
+                        long streamed = people.count();
+                        assertTrue(streamed >= NIFS && streamed <= 2 * NIFS, "readStream: " + streamed);
+                    }
+                    assertEquals(100, dao.readPage(null, 100).size());
+                    assertNotNull(dao.read(person(i)));
+                }
+                return null;
+            });
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    void testUpdateOnlyReplacesRegisteredPeople() {
+        dao.update(person(1));
+        assertNull(dao.read(person(1)));
+        assertEquals(0, dao.count());
+        dao.insert(person(1));
+        Person updated = person(1);
+        updated.setName("Updated");
+        dao.update(updated);
+        assertEquals("Updated", dao.read(person(1)).getName());
+        assertEquals(1, dao.count());
+    }
+}
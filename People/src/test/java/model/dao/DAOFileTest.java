@@ -0,0 +1,195 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.names;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import model.entity.Person;
+import start.Routes;
+
+/**
+ * Works on the File folder of the working directory, which surefire sets to
+ * target/test-run.
+ */
+class DAOFileTest {
+
+    private final List<DAOFile> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (!new File(System.getProperty("user.dir")).getName().equals("test-run")) {
+            throw new IllegalStateException("DAOFileTest deletes the data of the file, "
+                    + "run it with mvn test");
+        }
+        new File(Routes.FILE.getFolderPhotos()).mkdirs();
+        open(1).deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        //No compaction of this test may rewrite the file of the next one
+        for (DAOFile dao : opened) {
+            dao.awaitCompaction();
+        }
+    }
+
+    private DAOFile open(double compactionRatio) throws Exception {
+        DAOFile dao = new DAOFile(compactionRatio);
+        opened.add(dao);
+        return dao;
+    }
+
+    private DAOFile openPlain() throws Exception {
+        DAOFile dao = new DAOFile();
+        opened.add(dao);
+        return dao;
+    }
+
+    private static List<String> lines() throws Exception {
+        return Files.readAllLines(new File(Routes.FILE.getDataFile()).toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testReopenRebuildsTheIndex() throws Exception {
+        DAOFile dao = open(1);
+        for (int i = 0; i < 5; i++) {
+            dao.insert(person(i, "Name " + i));
+        }
+        dao.update(person(1, "Updated"));
+        dao.delete(person(2, null));
+        dao.deleteAll(List.of(person(3, null).getNif()));
+        DAOFile reopened = open(1);
+        assertEquals(3, reopened.count());
+        assertEquals("Updated", reopened.read(person(1, null)).getName());
+        assertNull(reopened.read(person(2, null)));
+        assertNull(reopened.read(person(3, null)));
+        //The updated version was appended at the end
+        assertEquals(List.of("Name 0", "Name 4", "Updated"), names(reopened.readAll()));
+        assertEquals(List.of("Name 0", "Updated", "Name 4"), names(reopened.readPage(null, 10)));
+    }
+
+    @Test
+    void testTombstonesOnlyForRegisteredNifs() throws Exception {
+        DAOFile dao = open(1);
+        dao.insert(person(1, "Name 1"));
+        dao.insert(person(2, "Name 2"));
+        dao.deleteAll(List.of(person(1, null).getNif(), person(9, null).getNif()));
+        //Two records and the tombstone of the only NIF registered
+        assertEquals(3, lines().size());
+        dao.deleteAll(List.of(person(9, null).getNif()));
+        assertEquals(3, lines().size());
+        assertEquals(WriteOutcome.NOT_REGISTERED, dao.deleteIfPresent(person(1, null)));
+        assertEquals(3, lines().size());
+        assertEquals(1, open(1).count());
+    }
+
+    @Test
+    void testCompactionAboveTheRatio() throws Exception {
+        DAOFile dao = open(0.5);
+        for (int i = 0; i < 10; i++) {
+            dao.insert(person(i, "Name " + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            dao.update(person(i, "Updated " + i));
+        }
+        dao.awaitCompaction();
+        //The old versions are gone, the file only has the live records
+        assertEquals(10, lines().size());
+        dao.deleteAll(List.of(person(0, null).getNif(), person(1, null).getNif()));
+        dao.awaitCompaction();
+        assertEquals(8, dao.count());
+        DAOFile reopened = open(0.5);
+        assertEquals(8, reopened.count());
+        List<String> expected = new ArrayList<>();
+        for (int i = 2; i < 10; i++) {
+            expected.add("Updated " + i);
+        }
+        assertEquals(expected, names(reopened.readAll()));
+        assertFalse(new File(Routes.FILE.getDataFile() + ".tmp").exists());
+    }
+
+    @Test
+    void testStreamFailsWhenTheFileIsRewritten() throws Exception {
+        DAOFile dao = openPlain();
+        for (int i = 0; i < 3; i++) {
+            dao.insert(person(i, "Name " + i));
+        }
+        try (Stream<Person> people = dao.readStream()) {
+            Iterator<Person> it = people.iterator();
+            assertEquals("Name 0", it.next().getName());
+            //A delete in plain mode rewrites the file
+            dao.delete(person(2, null));
+            assertThrows(ConcurrentModificationException.class, it::next);
+        }
+        try (Stream<Person> people = dao.readStream()) {
+            assertEquals(2, people.count());
+        }
+    }
+
+    @Test
+    void testCountInBothModes() throws Exception {
+        DAOFile plain = openPlain();
+        for (int i = 0; i < 4; i++) {
+            plain.insert(person(i, "Name " + i));
+        }
+        plain.update(person(0, "Updated"));
+        plain.delete(person(1, null));
+        assertEquals(3, plain.count());
+        assertEquals(3, lines().size());
+        DAOFile log = open(1);
+        assertEquals(3, log.count());
+        log.update(person(2, "Updated"));
+        log.delete(person(3, null));
+        assertEquals(2, log.count());
+        assertEquals(5, lines().size());
+    }
+
+    @Test
+    void testTornTrailingRecordIsCutOff() throws Exception {
+        DAOFile dao = open(1);
+        dao.insert(person(1, "Name 1"));
+        dao.insert(person(2, "Name 2"));
+        long length = new File(Routes.FILE.getDataFile()).length();
+        try (FileOutputStream out = new FileOutputStream(Routes.FILE.getDataFile(), true)) {
+            out.write("Torn\t00000003".getBytes(StandardCharsets.UTF_8));
+        }
+        //readAll maps the file and ignores the line without line break
+        assertEquals(List.of("Name 1", "Name 2"), names(dao.readAll()));
+        DAOFile reopened = open(1);
+        assertEquals(length, new File(Routes.FILE.getDataFile()).length());
+        assertEquals(2, reopened.count());
+        reopened.insert(person(3, "Name 3"));
+        assertEquals(List.of("Name 1", "Name 2", "Name 3"), names(open(1).readAll()));
+    }
+
+    @Test
+    void testScannerIgnoresTheLineWithoutLineBreak() throws Exception {
+        File file = new File(Routes.FILE.getDataFile());
+        Files.write(file.toPath(), "a\tb\n\nc\td\te\nf\tg".getBytes(StandardCharsets.UTF_8));
+        try (MappedRecordScanner scanner = new MappedRecordScanner(file.getPath())) {
+            assertTrue(scanner.next());
+            assertEquals(0, scanner.offset());
+            assertEquals(2, scanner.fieldCount());
+            assertEquals("b", scanner.field(1));
+            //The empty line is skipped
+            assertTrue(scanner.next());
+            assertEquals(5, scanner.offset());
+            assertEquals(3, scanner.fieldCount());
+            assertEquals("e", scanner.field(2));
+            assertFalse(scanner.next());
+            assertFalse(scanner.next());
+            assertEquals(3, scanner.countLines());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.nif;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Random;
+import model.entity.Person;
+
+class DAOIntHashMapTest {
+
+    private DAOIntHashMap dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new DAOIntHashMap();
+    }
+
+    @Test
+    void testPackOnlyValidNifs() {
+        assertEquals(12345678, DAOIntHashMap.pack("12345678Z"));
+        assertEquals(0, DAOIntHashMap.pack("00000000T"));
+        assertEquals("00000000T", DAOIntHashMap.unpack(0));
+        assertEquals("12345678Z", DAOIntHashMap.unpack(12345678));
+        assertTrue(DAOIntHashMap.pack("12345678A") < 0);
+        assertTrue(DAOIntHashMap.pack("X1234567L") < 0);
+        assertTrue(DAOIntHashMap.pack(null) < 0);
+    }
+
+    @Test
+    void testReadReturnsAllTheFields() {
+        Date date = new Date(86400000L);
+        dao.insert(new Person("John", nif(7), "08001", "600000000", "john@mail.com", date, null));
+        dao.insert(new Person("Nie", "X1234567L", "08002", "600000001", "nie@mail.com", null, null));
+        Person p = dao.read(new Person(nif(7)));
+        assertEquals("John", p.getName());
+        assertEquals(nif(7), p.getNif());
+        assertEquals("08001", p.getPostalCode());
+        assertEquals("600000000", p.getPhoneNumber());
+        assertEquals("john@mail.com", p.getEmail());
+        assertEquals(date, p.getDateOfBirth());
+        assertEquals("Nie", dao.read(new Person("X1234567L")).getName());
+        assertEquals(2, dao.count());
+        assertEquals(2, dao.readAll().size());
+    }
+
+    @Test
+    void testRandomWritesMatchAHashMap() {
+        //Few keys and many deletes, so that the table grows and probes collide
+        Random random = new Random(1);
+        HashMap<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int number = random.nextInt(5000);
+            String nif = number % 50 == 0 ? "X" + number : nif(number);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    dao.insert(new Person("Name " + i, nif, null, null, null, null, null));
+                    expected.put(nif, "Name " + i);
+                }
+                case 1 -> {
+                    boolean absent = !expected.containsKey(nif);
+                    assertEquals(absent ? WriteOutcome.INSERTED : WriteOutcome.ALREADY_REGISTERED,
+                            dao.insertIfAbsent(new Person("New " + i, nif, null, null, null, null, null)));
+                    expected.putIfAbsent(nif, "New " + i);
+                }
+                case 2 -> {
+                    assertEquals(expected.remove(nif) != null ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED,
+                            dao.deleteIfPresent(new Person(nif)));
+                }
+                default -> {
+                    Person p = dao.read(new Person(nif));
+                    assertEquals(expected.get(nif), p == null ? null : p.getName());
+                }
+            }
+        }
+        assertEquals(expected.size(), dao.count());
+        assertEquals(expected.size(), dao.readAll().size());
+        for (Person p : dao.readAll()) {
+            assertEquals(expected.get(p.getNif()), p.getName());
+        }
+    }
+}
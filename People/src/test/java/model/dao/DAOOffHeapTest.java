@@ -0,0 +1,112 @@
+package model.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static model.dao.TestPeople.person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import javax.swing.ImageIcon;
+import model.entity.Person;
+import utils.DataValidation;
+
+class DAOOffHeapTest {
+
+    private DAOOffHeap dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new DAOOffHeap();
+    }
+
+    @Test
+    void testReadReturnsAllTheFields() throws Exception {
+        Date date = new Date(86400000L);
+        BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        dao.insert(new Person("Núria Çà", "12345678Z", "08001", "600000000", "nuria@mail.com", date, new ImageIcon(image)));
+        dao.insert(new Person("Nie", "X1234567L", null, null, null, null, null));
+        Person p = dao.read(new Person("12345678Z"));
+        assertEquals("Núria Çà", p.getName());
+        assertEquals("12345678Z", p.getNif());
+        assertEquals("08001", p.getPostalCode());
+        assertEquals("600000000", p.getPhoneNumber());
+        assertEquals("nuria@mail.com", p.getEmail());
+        assertEquals(date, p.getDateOfBirth());
+        assertTrue(p.hasPhoto());
+        assertEquals(4, p.getPhoto().getIconWidth());
+        Person nie = dao.read(new Person("X1234567L"));
+        assertEquals("Nie", nie.getName());
+        assertNull(nie.getPostalCode());
+        assertNull(nie.getDateOfBirth());
+        assertFalse(nie.hasPhoto());
+        assertEquals(2, dao.count());
+    }
+
+    @Test
+    void testCompactionKeepsOrderAndFields() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            dao.insert(person(i));
+            if (i % 10 == 0) {
+                expected.add(person(i).getNif());
+            }
+        }
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 10 != 0) {
+                dao.delete(person(i));
+            } else {
+                Person updated = person(i);
+                updated.setName("Updated " + i);
+                dao.update(updated);
+            }
+        }
+        List<String> nifs = new ArrayList<>();
+        for (Person p : dao.readAll()) {
+            nifs.add(p.getNif());
+            assertEquals("Updated " + Integer.parseInt(p.getNif().substring(0, 8)), p.getName());
+        }
+        assertEquals(expected, nifs);
+        assertEquals(1000, dao.count());
+        long before = dao.getOffHeapBytes();
+        dao.compact();
+        assertTrue(dao.getOffHeapBytes() <= before);
+        assertEquals(person(500).getEmail(), dao.read(person(500)).getEmail());
+        assertNull(dao.read(person(501)));
+    }
+
+    @Test
+    void testRandomWritesMatchAHashMap() throws Exception {
+        Random random = new Random(1);
+        HashMap<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int number = random.nextInt(3000);
+            String nif = number % 50 == 0 ? "X" + number : DataValidation.calculateNifLetter(String.format("%08d", number));
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    dao.insert(new Person("Name " + i, nif, null, null, null, null, null));
+                    expected.put(nif, "Name " + i);
+                }
+                case 1 -> {
+                    dao.update(new Person("Updated " + i, nif, null, null, null, null, null));
+                    expected.replace(nif, "Updated " + i);
+                }
+                case 2 -> {
+                    assertEquals(expected.remove(nif) != null ? WriteOutcome.DELETED : WriteOutcome.NOT_REGISTERED,
+                            dao.deleteIfPresent(new Person(nif)));
+                }
+                default -> {
+                    Person p = dao.read(new Person(nif));
+                    assertEquals(expected.get(nif), p == null ? null : p.getName());
+                }
+            }
+        }
+        assertEquals(expected.size(), dao.count());
+        for (Person p : dao.readAll()) {
+            assertEquals(expected.get(p.getNif()), p.getName());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package model.dao;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import model.entity.Person;
+import utils.DataValidation;
+
+/**
+ * People used by the tests of the storage systems. The number is the NIF
+ * without its letter and the other fields are derived from it, so the same
+ * number always gives an equal person.
+ */
+final class TestPeople {
+
+    private TestPeople() {
+    }
+
+    /**
+     * @param number from 0 to 99999999
+     * @return valid NIF of the number
+     */
+    static String nif(int number) {
+        return DataValidation.calculateNifLetter(String.format("%08d", number));
+    }
+
+    static Person person(int number) {
+        return person(number, "Name " + number);
+    }
+
+    static Person person(int number, String name) {
+        return new Person(name, nif(number), "0800" + number % 10, "600000000",
+                "person" + number + "@mail.com", new Date(number * 86400000L), null);
+    }
+
+    static List<String> names(List<Person> people) {
+        List<String> names = new ArrayList<>();
+        for (Person p : people) {
+            names.add(p.getName());
+        }
+        return names;
+    }
+}
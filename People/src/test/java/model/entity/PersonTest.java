@@ -4,6 +4,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import javax.swing.ImageIcon;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Date;
 import model.entity.Person;
 
@@ -80,6 +85,15 @@ class PersonTest {
         assertFalse(person.equals(differentPerson));
     }
 
+    @Test
+    void testEqualsComparesNifNotHashCode() {
+        //"Aa" and "BB" have the same String.hashCode()
+        Person aa = new Person("Aa");
+        Person bb = new Person("BB");
+        assertEquals(aa.hashCode(), bb.hashCode());
+        assertFalse(aa.equals(bb));
+    }
+
     @Test
     void testEqualsNullAndDifferentClass() {
         assertFalse(person.equals(null));
@@ -101,4 +115,74 @@ class PersonTest {
                 + ", DateOfBirth = " + dateOfBirth + ", Photo = true}";
         assertEquals(expected, personWithFullData.toString());
     }
+
+    @Test
+    void testExternalizableRoundTrip() throws Exception {
+        Person p = new Person(name, nif, postalCode, phoneNumber, email, dateOfBirth,
+                new ImageIcon(new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB)));
+        p.setPhotoOnlyJPA(new byte[]{1, 2, 3});
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(p);
+        }
+        Person copy;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            copy = (Person) ois.readObject();
+        }
+        assertEquals(name, copy.getName());
+        assertEquals(nif, copy.getNif());
+        assertEquals(postalCode, copy.getPostalCode());
+        assertEquals(phoneNumber, copy.getPhoneNumber());
+        assertEquals(email, copy.getEmail());
+        assertEquals(dateOfBirth, copy.getDateOfBirth());
+        assertEquals(4, copy.getPhoto().getIconWidth());
+        assertNull(copy.getPhotoOnlyJPA());
+    }
+
+    private static byte[] write(Person p) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(p);
+        }
+        return baos.toByteArray();
+    }
+
+    private static Person read(byte[] bytes) throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Person) ois.readObject();
+        }
+    }
+
+    @Test
+    void testPhotoReadIsWrittenAgainAsIs() throws Exception {
+        Person p = new Person(name, nif, postalCode, phoneNumber, email, dateOfBirth,
+                new ImageIcon(new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB)));
+        byte[] first = write(p);
+        Person copy = read(first);
+        String reference = copy.getPhotoReference();
+        assertNotNull(reference);
+        assertArrayEquals(first, write(copy));
+        //Decoding the photo does not replace it
+        assertEquals(4, copy.getPhoto().getIconWidth());
+        assertArrayEquals(first, write(copy));
+        assertEquals(reference, read(write(copy)).getPhotoReference());
+        copy.setPhoto(new ImageIcon(new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB)));
+        assertNotEquals(reference, read(write(copy)).getPhotoReference());
+    }
+
+    @Test
+    void testPhotoSourceDecodedOnFirstAccess() {
+        int[] calls = new int[1];
+        person.setPhotoSource(() -> {
+            calls[0]++;
+            return photo;
+        });
+        assertTrue(person.hasPhoto());
+        assertEquals(0, calls[0]);
+        assertEquals(photo, person.getPhoto());
+        assertEquals(photo, person.getPhoto());
+        assertEquals(1, calls[0]);
+        person.setPhoto(null);
+        assertFalse(person.hasPhoto());
+    }
 }
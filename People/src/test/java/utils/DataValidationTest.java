@@ -2,6 +2,9 @@ package utils;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import model.entity.Person;
+
 import utils.DataValidation;
 
 class DataValidationTest {
@@ -34,4 +37,43 @@ class DataValidationTest {
     void testCalculateNifLetter_InvalidInput() {
         assertThrows(NumberFormatException.class, () -> DataValidation.calculateNifLetter("ABCDEF"));
     }
+
+    @Test
+    void testValidNif() {
+        assertTrue(DataValidation.validNif("12345678Z"));
+        assertFalse(DataValidation.validNif("12345678A"));
+        assertFalse(DataValidation.validNif("1234567Z"));
+        assertFalse(DataValidation.validNif("1234A678Z"));
+        assertFalse(DataValidation.validNif(null));
+    }
+
+    @Test
+    void testValidatorsMatchRegex() {
+        String[] postalCodes = {"08001", "08001-1234", "08001 1234", "080011234", "0800", "08001-123", "08001--1234", "a8001"};
+        for (String s : postalCodes) {
+            assertEquals(s.matches(DataValidation.POSTAL_CODE_REGEX), DataValidation.validPostalCode(s), s);
+        }
+        String[] phones = {"600000000", "+34 600 000 000", "+34-93-123-45-67", "93.123.45.67", "1--2", "+", "", "12345678901234567890123", "600 000 000 "};
+        for (String s : phones) {
+            assertEquals(s.matches(DataValidation.PHONE_NUMBER_REGEX), DataValidation.validPhoneNumber(s), s);
+        }
+        assertTrue(DataValidation.validEmail("person@mail.com"));
+        assertFalse(DataValidation.validEmail("person.mail.com"));
+    }
+
+    @Test
+    void testValidateAll() {
+        List<Person> people = List.of(
+                new Person("Ann", "12345678Z", "08001", "600000000", "ann@mail.com"),
+                new Person("B0b", "12345678A", "0800", "600000000", "bob@mail.com"),
+                new Person("Carl", "12345678Z", "08001", "600000000", ""));
+        List<FieldError> errors = DataValidation.validateAll(people);
+        assertEquals(5, errors.size());
+        assertEquals(FieldError.NAME, errors.get(0).getField());
+        assertEquals(FieldError.NIF, errors.get(1).getField());
+        assertEquals(FieldError.POSTAL_CODE, errors.get(2).getField());
+        assertEquals("repeated", errors.get(3).getMessage());
+        assertEquals(2, errors.get(4).getIndex());
+        assertEquals("required", errors.get(4).getMessage());
+    }
 }